@@ -0,0 +1,49 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.trustedanalytics.samples.loadtest;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Scales sample.csv to a requested number of data rows by repeating its rows.
+ */
+class DatasetGenerator {
+
+    private final String header;
+    private final List<String> rows;
+
+    DatasetGenerator(Path sampleCsv) throws IOException {
+        List<String> lines = Files.readAllLines(sampleCsv, StandardCharsets.UTF_8);
+        if (lines.size() < 2) {
+            throw new IOException(sampleCsv + " must contain header and at least one row");
+        }
+        header = lines.get(0);
+        rows = lines.subList(1, lines.size());
+    }
+
+    String generate(int rowCount) {
+        StringBuilder csv = new StringBuilder(header).append('\n');
+        for (int i = 0; i < rowCount; i++) {
+            csv.append(rows.get(i % rows.size())).append('\n');
+        }
+        return csv.toString();
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.trustedanalytics.samples.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Calls the demo application the same way hdfs_demo.sh and hive_demo.sh do, timing every request.
+ */
+class DemoClient {
+
+    static final String CREATE_DIRECTORY = "POST /rest/directory";
+    static final String CREATE_FILE = "POST /rest/file";
+    static final String CREATE_TABLE = "POST /rest/hive/{tableId}";
+    static final String SELECT_TABLE = "GET /rest/hive/{tableId}";
+    static final String DELETE_TABLE = "DELETE /rest/hive/{tableId}";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final String baseUrl;
+    private final String token;
+    private final LatencyRecorder recorder;
+
+    DemoClient(String baseUrl, String token, LatencyRecorder recorder) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.token = token;
+        this.recorder = recorder;
+    }
+
+    /**
+     * @return full hdfs path of created directory
+     */
+    String createDirectory(String directory) throws IOException {
+        String response = call(CREATE_DIRECTORY, "POST", "/rest/directory/" + directory, null);
+        return MAPPER.readTree(response).get("hdfsPath").asText();
+    }
+
+    /**
+     * @return full hdfs path of created file
+     */
+    String createFile(String filePath, String text) throws IOException {
+        String response = call(CREATE_FILE, "POST", "/rest/file/" + filePath, "text=" + encode(text));
+        return MAPPER.readTree(response).get("hdfsPath").asText();
+    }
+
+    JsonNode createTable(String tableId, String fullHdfsDirPath, String headerFilePath) throws IOException {
+        String query = "?fullHdfsDirPath=" + encode(fullHdfsDirPath) + "&headerFilePath=" + encode(headerFilePath);
+        return MAPPER.readTree(call(CREATE_TABLE, "POST", "/rest/hive/" + tableId + query, null));
+    }
+
+    String selectTable(String tableId) throws IOException {
+        return call(SELECT_TABLE, "GET", "/rest/hive/" + tableId, null);
+    }
+
+    void deleteTable(String tableId) throws IOException {
+        call(DELETE_TABLE, "DELETE", "/rest/hive/" + tableId, null);
+    }
+
+    /**
+     * Sends request and reads whole response, both are included in recorded latency.
+     */
+    private String call(String endpoint, String method, String path, String formBody) throws IOException {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+            connection.setRequestMethod(method);
+            connection.setRequestProperty("Authorization", "bearer " + token);
+            if (formBody != null) {
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+                try (OutputStream os = connection.getOutputStream()) {
+                    os.write(formBody.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+
+            int status = connection.getResponseCode();
+            InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            String response = body == null ? "" : readFully(body);
+            if (status >= 400) {
+                throw new IOException(endpoint + " returned " + status + ": " + response);
+            }
+            success = true;
+            return response;
+        } finally {
+            recorder.record(endpoint, System.nanoTime() - start, success);
+        }
+    }
+
+    private static String readFully(InputStream is) throws IOException {
+        try (InputStream in = is) {
+            return IOUtils.toString(in, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static String encode(String value) throws IOException {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8.name());
+    }
+}
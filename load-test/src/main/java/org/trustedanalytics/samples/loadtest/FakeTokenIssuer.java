@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.trustedanalytics.samples.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.springframework.security.jwt.JwtHelper;
+import org.springframework.security.jwt.crypto.sign.MacSigner;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stand-in for UAA. Serves /token_key the way the sso service does and signs tokens
+ * accepted by the application's resource server configuration.
+ */
+class FakeTokenIssuer implements AutoCloseable {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String RESOURCE_ID = "cloud_controller";
+
+    private final String secret = UUID.randomUUID().toString();
+    private final HttpServer server;
+
+    FakeTokenIssuer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        byte[] tokenKey = MAPPER.writeValueAsBytes(tokenKeyResponse());
+        server.createContext("/token_key", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, tokenKey.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(tokenKey);
+            }
+        });
+        server.start();
+    }
+
+    String getTokenKeyUri() {
+        return "http://localhost:" + server.getAddress().getPort() + "/token_key";
+    }
+
+    String issueToken(String userName) throws IOException {
+        long now = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+        Map<String, Object> claims = new HashMap<>();
+        claims.put("jti", UUID.randomUUID().toString());
+        claims.put("sub", userName);
+        claims.put("user_id", userName);
+        claims.put("user_name", userName);
+        claims.put("email", userName + "@example.com");
+        claims.put("client_id", "cf");
+        claims.put("scope", Arrays.asList("openid", "cloud_controller.read", "cloud_controller.write"));
+        claims.put("aud", Collections.singletonList(RESOURCE_ID));
+        claims.put("iat", now);
+        claims.put("exp", now + TimeUnit.HOURS.toSeconds(12));
+        String json = new String(MAPPER.writeValueAsBytes(claims), StandardCharsets.UTF_8);
+        return JwtHelper.encode(json, new MacSigner(secret)).getEncoded();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private Map<String, String> tokenKeyResponse() {
+        Map<String, String> response = new HashMap<>();
+        response.put("alg", "HMACSHA256");
+        response.put("value", secret);
+        return response;
+    }
+}
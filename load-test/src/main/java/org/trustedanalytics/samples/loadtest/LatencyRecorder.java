@@ -0,0 +1,86 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.trustedanalytics.samples.loadtest;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects request latencies per endpoint and prints throughput and latency percentiles.
+ */
+class LatencyRecorder {
+
+    private final Map<String, EndpointStats> endpoints = new ConcurrentSkipListMap<>();
+
+    void record(String endpoint, long nanos, boolean success) {
+        endpoints.computeIfAbsent(endpoint, e -> new EndpointStats()).add(nanos, success);
+    }
+
+    void printReport(PrintStream out, long wallNanos) {
+        double wallSeconds = wallNanos / 1e9;
+        out.printf("%-28s %8s %7s %10s %10s %10s %10s%n",
+                "endpoint", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p999 ms");
+        endpoints.forEach((endpoint, stats) -> {
+            long[] samples = stats.snapshot();
+            Arrays.sort(samples);
+            out.printf("%-28s %8d %7d %10.2f %10.1f %10.1f %10.1f%n",
+                    endpoint, samples.length, stats.getErrors(), samples.length / wallSeconds,
+                    percentileMillis(samples, 0.50), percentileMillis(samples, 0.99), percentileMillis(samples, 0.999));
+        });
+        out.printf("wall time %.1f s%n", wallSeconds);
+    }
+
+    /**
+     * Nearest-rank percentile.
+     */
+    private static double percentileMillis(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        int rank = (int) Math.ceil(percentile * sorted.length);
+        long nanos = sorted[Math.max(0, rank - 1)];
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private static class EndpointStats {
+
+        private long[] samples = new long[1024];
+        private int size;
+        private long errors;
+
+        synchronized void add(long nanos, boolean success) {
+            if (size == samples.length) {
+                samples = Arrays.copyOf(samples, size * 2);
+            }
+            samples[size++] = nanos;
+            if (!success) {
+                errors++;
+            }
+        }
+
+        synchronized long[] snapshot() {
+            return Arrays.copyOf(samples, size);
+        }
+
+        synchronized long getErrors() {
+            return errors;
+        }
+    }
+}
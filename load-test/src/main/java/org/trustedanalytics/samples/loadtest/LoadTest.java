@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.trustedanalytics.samples.loadtest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Replays hdfs_demo.sh and hive_demo.sh flows at configurable concurrency and reports
+ * throughput and latency percentiles per endpoint.
+ *
+ * Without -Dloadtest.target the application jar is started against local stand-ins, see {@link LocalStack}.
+ */
+public class LoadTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoadTest.class);
+
+    private final LoadTestConfig config;
+    private final String csv;
+    // hive table names must not contain dashes
+    private final String runId = UUID.randomUUID().toString().replace("-", "").substring(0, 8).toLowerCase(Locale.ROOT);
+
+    LoadTest(LoadTestConfig config, String csv) {
+        this.config = config;
+        this.csv = csv;
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config = LoadTestConfig.fromSystemProperties();
+        String csv = new DatasetGenerator(config.getSampleCsv()).generate(config.getRows());
+        LoadTest loadTest = new LoadTest(config, csv);
+
+        if (config.getTarget() != null) {
+            loadTest.run(config.getTarget(), config.getToken());
+        } else {
+            try (LocalStack stack = LocalStack.start(config)) {
+                loadTest.run(stack.getAppUrl(), stack.issueToken("loadtest"));
+            }
+        }
+    }
+
+    void run(String appUrl, String token) throws Exception {
+        LOGGER.info("Warming up {} with {} iterations per worker", appUrl, config.getWarmupIterations());
+        runWorkers(new DemoClient(appUrl, token, new LatencyRecorder()), "warmup", config.getWarmupIterations());
+
+        LOGGER.info("Running {} workers, {} iterations each, {} rows per file",
+                config.getConcurrency(), config.getIterations(), config.getRows());
+        LatencyRecorder recorder = new LatencyRecorder();
+        long start = System.nanoTime();
+        runWorkers(new DemoClient(appUrl, token, recorder), "run", config.getIterations());
+        recorder.printReport(System.out, System.nanoTime() - start);
+    }
+
+    private void runWorkers(DemoClient client, String phase, int iterations) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(config.getConcurrency());
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int worker = 0; worker < config.getConcurrency(); worker++) {
+                String prefix = "loadtest_" + runId + "_" + phase + "_" + worker;
+                workers.add(executor.submit(() -> {
+                    for (int i = 0; i < iterations; i++) {
+                        runWorkflow(client, prefix + "_" + i);
+                    }
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Single pass of the demo scripts. Failures are recorded and logged, the table is always dropped.
+     */
+    private void runWorkflow(DemoClient client, String name) {
+        try {
+            String directory = client.createDirectory(name);
+            String file = client.createFile(name + "/sample.csv", csv);
+            client.createTable(name, directory, file);
+            client.selectTable(name);
+        } catch (Exception e) {
+            LOGGER.warn("Workflow {} failed: {}", name, e.getMessage());
+        } finally {
+            try {
+                client.deleteTable(name);
+            } catch (Exception e) {
+                LOGGER.warn("Deleting table {} failed: {}", name, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.trustedanalytics.samples.loadtest;
+
+import lombok.Getter;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Load test settings, read from system properties so they can be passed with -D to exec:java.
+ */
+@Getter
+public class LoadTestConfig {
+
+    private static final String PREFIX = "loadtest.";
+
+    // when target is not set, the application is started against local stand-ins
+    private final String target;
+    private final String token;
+    private final int concurrency;
+    private final int iterations;
+    private final int warmupIterations;
+    private final int rows;
+    private final int dataNodes;
+    private final Path appJar;
+    private final Path sampleCsv;
+
+    private LoadTestConfig() {
+        target = System.getProperty(PREFIX + "target");
+        token = System.getProperty(PREFIX + "token");
+        concurrency = Integer.getInteger(PREFIX + "concurrency", 4);
+        iterations = Integer.getInteger(PREFIX + "iterations", 10);
+        warmupIterations = Integer.getInteger(PREFIX + "warmupIterations", 1);
+        rows = Integer.getInteger(PREFIX + "rows", 1000);
+        dataNodes = Integer.getInteger(PREFIX + "dataNodes", 1);
+        appJar = Paths.get(System.getProperty(PREFIX + "appJar", "../target/hdfs-hive-demo-0.1.3.jar"));
+        sampleCsv = Paths.get(System.getProperty(PREFIX + "sampleCsv", "../sample.csv"));
+    }
+
+    public static LoadTestConfig fromSystemProperties() {
+        LoadTestConfig config = new LoadTestConfig();
+        if (config.target != null && config.token == null) {
+            throw new IllegalArgumentException(PREFIX + "token is required when " + PREFIX + "target is set");
+        }
+        if (config.concurrency < 1 || config.iterations < 1 || config.rows < 0) {
+            throw new IllegalArgumentException("concurrency and iterations must be positive, rows not negative");
+        }
+        return config;
+    }
+}
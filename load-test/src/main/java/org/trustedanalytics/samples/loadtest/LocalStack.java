@@ -0,0 +1,263 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.trustedanalytics.samples.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hive.service.server.HiveServer2;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts MiniDFSCluster, an in-process HiveServer2 backed by it, a fake token issuer and finally
+ * the application jar bound to all of them through VCAP_SERVICES.
+ */
+class LocalStack implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocalStack.class);
+    private static final String WORKING_DIRECTORY = "/loadtest";
+    private static final long STARTUP_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(3);
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    private final LoadTestConfig config;
+    private java.nio.file.Path baseDir;
+    private java.nio.file.Path appLog;
+    private MiniDFSCluster dfs;
+    private HiveServer2 hiveServer;
+    private FakeTokenIssuer tokenIssuer;
+    private Process app;
+    private String appUrl;
+
+    private LocalStack(LoadTestConfig config) {
+        this.config = config;
+    }
+
+    static LocalStack start(LoadTestConfig config) throws Exception {
+        LocalStack stack = new LocalStack(config);
+        try {
+            stack.startAll();
+            return stack;
+        } catch (Exception e) {
+            stack.close();
+            throw e;
+        }
+    }
+
+    String getAppUrl() {
+        return appUrl;
+    }
+
+    String issueToken(String userName) throws IOException {
+        return tokenIssuer.issueToken(userName);
+    }
+
+    private void startAll() throws Exception {
+        baseDir = Files.createTempDirectory("hdfs-hive-demo-load-test");
+        LOGGER.info("Local stack working directory {}", baseDir);
+        // derby writes its log to the working directory by default
+        System.setProperty("derby.stream.error.file", baseDir.resolve("derby.log").toString());
+
+        Configuration conf = new Configuration();
+        conf.set(MiniDFSCluster.HDFS_MINIDFS_BASEDIR, baseDir.resolve("dfs").toString());
+        // HdfsService.createDirectory sets ACLs
+        conf.setBoolean(DFSConfigKeys.DFS_NAMENODE_ACLS_ENABLED_KEY, true);
+        dfs = new MiniDFSCluster.Builder(conf).numDataNodes(config.getDataNodes()).build();
+        dfs.waitActive();
+        String dfsUri = dfs.getFileSystem().getUri().toString();
+        FileSystem fs = dfs.getFileSystem();
+        fs.mkdirs(new Path(WORKING_DIRECTORY));
+        fs.setPermission(new Path(WORKING_DIRECTORY), FsPermission.valueOf("drwxrwxrwx"));
+        LOGGER.info("MiniDFSCluster started at {}", dfsUri);
+
+        int hivePort = freePort();
+        hiveServer = new HiveServer2();
+        hiveServer.init(hiveConf(dfsUri, hivePort));
+        hiveServer.start();
+        waitForPort(hivePort);
+        LOGGER.info("HiveServer2 started on port {}", hivePort);
+
+        tokenIssuer = new FakeTokenIssuer();
+
+        int appPort = freePort();
+        appUrl = "http://localhost:" + appPort;
+        app = launchApp(appPort, vcapServices(dfsUri, hivePort));
+        waitForApp();
+        LOGGER.info("Application started at {}", appUrl);
+    }
+
+    private HiveConf hiveConf(String dfsUri, int port) {
+        HiveConf conf = new HiveConf();
+        conf.set("fs.defaultFS", dfsUri);
+        conf.setVar(HiveConf.ConfVars.METASTORECONNECTURLKEY,
+                "jdbc:derby:;databaseName=" + baseDir.resolve("metastore_db") + ";create=true");
+        conf.setVar(HiveConf.ConfVars.METASTOREWAREHOUSE, dfsUri + "/user/hive/warehouse");
+        conf.setVar(HiveConf.ConfVars.SCRATCHDIR, baseDir.resolve("hive-scratch").toString());
+        conf.setVar(HiveConf.ConfVars.LOCALSCRATCHDIR, baseDir.resolve("hive-local-scratch").toString());
+        conf.setVar(HiveConf.ConfVars.DOWNLOADED_RESOURCES_DIR, baseDir.resolve("hive-resources").toString());
+        conf.setVar(HiveConf.ConfVars.HIVE_SERVER2_THRIFT_BIND_HOST, "localhost");
+        conf.setIntVar(HiveConf.ConfVars.HIVE_SERVER2_THRIFT_PORT, port);
+        conf.setBoolVar(HiveConf.ConfVars.HIVE_SERVER2_ENABLE_DOAS, false);
+        conf.setBoolVar(HiveConf.ConfVars.HIVE_SUPPORT_CONCURRENCY, false);
+        conf.setBoolVar(HiveConf.ConfVars.METASTORE_SCHEMA_VERIFICATION, false);
+        conf.set("datanucleus.autoCreateSchema", "true");
+        conf.set("mapreduce.framework.name", "local");
+        return conf;
+    }
+
+    /**
+     * Service bindings in the layout produced by hdfs, hive and sso brokers, without kerberos
+     * so that hadoop-utils falls back to simple authentication.
+     */
+    private String vcapServices(String dfsUri, int hivePort) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode services = mapper.createObjectNode();
+
+        ObjectNode hdfsCredentials = binding(services, "hdfs", "hdfs-shared");
+        ObjectNode hadoopConfig = hdfsCredentials.putObject("HADOOP_CONFIG_KEY");
+        hadoopConfig.put("fs.defaultFS", dfsUri);
+        hadoopConfig.put("hadoop.security.authentication", "simple");
+        hdfsCredentials.put("uri", dfsUri + WORKING_DIRECTORY + "/");
+
+        ObjectNode hiveCredentials = binding(services, "hive", "hive-shared");
+        hiveCredentials.put("connectionUrl", "jdbc:hive2://localhost:" + hivePort + "/default");
+
+        ObjectNode ssoCredentials = binding(services, "user-provided", "sso");
+        ssoCredentials.put("tokenKey", tokenIssuer.getTokenKeyUri());
+
+        return mapper.writeValueAsString(services);
+    }
+
+    private static ObjectNode binding(ObjectNode services, String label, String name) {
+        ArrayNode instances = services.has(label) ? (ArrayNode) services.get(label) : services.putArray(label);
+        ObjectNode instance = instances.addObject();
+        instance.put("name", name);
+        instance.put("label", label);
+        instance.put("plan", "shared");
+        instance.putArray("tags");
+        return instance.putObject("credentials");
+    }
+
+    private Process launchApp(int port, String vcapServices) throws IOException {
+        if (!Files.isRegularFile(config.getAppJar())) {
+            throw new IOException("Application jar " + config.getAppJar() + " not found, run mvn package first");
+        }
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        ProcessBuilder builder = new ProcessBuilder(java, "-jar", config.getAppJar().toString(),
+                "--server.port=" + port,
+                "--spring.oauth2.resource.jwt.keyUri=" + tokenIssuer.getTokenKeyUri(),
+                // uploads are sent as form parameters, do not cap their size
+                "--server.tomcat.max-http-post-size=-1");
+        builder.environment().put("VCAP_SERVICES", vcapServices);
+        builder.redirectErrorStream(true);
+        // kept outside baseDir, which is deleted on close, so that failed startups can be diagnosed
+        appLog = Files.createTempFile("hdfs-hive-demo-app", ".log");
+        LOGGER.info("Application log {}", appLog);
+        builder.redirectOutput(appLog.toFile());
+        return builder.start();
+    }
+
+    private void waitForApp() throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            if (!app.isAlive()) {
+                throw new IOException("Application exited with " + app.exitValue() + ", see " + appLog);
+            }
+            try {
+                HttpURLConnection connection = (HttpURLConnection) new URL(appUrl + "/v2/api-docs").openConnection();
+                if (connection.getResponseCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // not listening yet
+            }
+            TimeUnit.MILLISECONDS.sleep(500);
+        }
+        throw new IOException("Application did not start within " + STARTUP_TIMEOUT_MILLIS + " ms, see " + appLog);
+    }
+
+    private static void waitForPort(int port) throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            try (Socket socket = new Socket("localhost", port)) {
+                return;
+            } catch (IOException e) {
+                TimeUnit.MILLISECONDS.sleep(200);
+            }
+        }
+        throw new IOException("Nothing is listening on port " + port);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (app != null) {
+            stopApp();
+        }
+        if (tokenIssuer != null) {
+            tokenIssuer.close();
+        }
+        if (hiveServer != null) {
+            hiveServer.stop();
+        }
+        if (dfs != null) {
+            dfs.shutdown();
+        }
+        if (baseDir != null) {
+            // block data, metastore and scratch space, may be large for scaled data sets
+            FileUtils.deleteQuietly(baseDir.toFile());
+        }
+    }
+
+    /**
+     * Waits for the application to exit so that its port and open files are released.
+     */
+    private void stopApp() {
+        app.destroy();
+        try {
+            if (!app.waitFor(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                LOGGER.warn("Application did not stop within {} s, killing it", SHUTDOWN_TIMEOUT_SECONDS);
+                app.destroyForcibly().waitFor(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            app.destroyForcibly();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -21,8 +21,16 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.HandlerMapping;
+import org.trustedanalytics.samples.model.CsvProfile;
+import org.trustedanalytics.samples.model.DataSample;
+import org.trustedanalytics.samples.model.ExportCompression;
+import org.trustedanalytics.samples.model.ExportFormat;
 import org.trustedanalytics.samples.model.HdfsObject;
+import org.trustedanalytics.samples.model.HdfsReadStats;
+import org.trustedanalytics.samples.model.HiveExport;
 import org.trustedanalytics.samples.model.HiveTable;
+import org.trustedanalytics.samples.model.HiveTableMetadata;
+import org.trustedanalytics.samples.model.SamplingMethod;
 import org.trustedanalytics.samples.services.HdfsService;
 import org.trustedanalytics.samples.services.HiveService;
 
@@ -38,9 +46,17 @@ public class DemoController {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DemoController.class);
     public static final String ENDPOINT_REST_HIVE_TABLE_ID = "/rest/hive/{tableId}";
+    public static final String ENDPOINT_REST_HIVE_METADATA_TABLE_ID = "/rest/hive-metadata/{tableId}";
+    public static final String ENDPOINT_REST_HIVE_SAMPLE_TABLE_ID = "/rest/hive-sample/{tableId}";
+    public static final String ENDPOINT_REST_HIVE_TABLE_ID_EXPORT = "/rest/hive/{tableId}/export";
     public static final String ENDPOINT_REST_HIVE_TABLE_ID_COLUMN_NAME = "/rest/hive/{tableId}/{columnName}";
     public static final String ENDPOINT_REST_FILE = "/rest/file/";
     public static final String ENDPOINT_REST_DIRECTORY = "/rest/directory/";
+    public static final String ENDPOINT_REST_SAMPLE_FILE = "/rest/sample/file/";
+    public static final String ENDPOINT_REST_PROFILE_DIRECTORY = "/rest/profile/directory/";
+    public static final String ENDPOINT_REST_STATS_HDFS_READS = "/rest/stats/hdfs-reads";
+    public static final String DEFAULT_SAMPLE_SIZE = "100";
+    public static final String DEFAULT_SAMPLE_PERCENT = "1";
 
 
     private final HdfsService hdfsService;
@@ -84,6 +100,42 @@ public class DemoController {
         return hdfsService.readFile(extractFilePathFromRequest(request, ENDPOINT_REST_FILE));
     }
 
+    @ApiOperation(
+            value = "Sampling lines from hdfs file",
+            notes = "Method RESERVOIR streams the whole file, BLOCK_OFFSET seeks to random offsets. " +
+                    "If method is omitted, it is chosen by file size. Files over 64 MB are always sampled " +
+                    "with BLOCK_OFFSET, the method used is returned in the response"
+    )
+    @RequestMapping(method = RequestMethod.GET, value = ENDPOINT_REST_SAMPLE_FILE + "**")
+    public DataSample sampleFile(@RequestParam(value = "size", defaultValue = DEFAULT_SAMPLE_SIZE) int size,
+                                 @RequestParam(value = "method", required = false) SamplingMethod method,
+                                 HttpServletRequest request)
+            throws IOException, LoginException, InterruptedException, URISyntaxException {
+        return hdfsService.sampleFile(extractFilePathFromRequest(request, ENDPOINT_REST_SAMPLE_FILE), size, method);
+    }
+
+    @ApiOperation(
+            value = "Computing column statistics of CSV files in hdfs directory",
+            notes = "Files are scanned in parallel inside the application, no hive table is needed. " +
+                    "Header is taken from 'headerFilePath' or from the first file in directory"
+    )
+    @RequestMapping(method = RequestMethod.GET, value = ENDPOINT_REST_PROFILE_DIRECTORY + "**")
+    public CsvProfile profileDirectory(@RequestParam(value = "headerFilePath", required = false) String headerFilePath,
+                                       HttpServletRequest request)
+            throws IOException, LoginException, InterruptedException, URISyntaxException {
+        return hdfsService.profileDirectory(extractFilePathFromRequest(request, ENDPOINT_REST_PROFILE_DIRECTORY), headerFilePath);
+    }
+
+    @ApiOperation(
+            value = "Hdfs read statistics",
+            notes = "How often hedged reads fired and won, deadlines exceeded and metadata calls retried " +
+                    "since application start. Counters are collected in hdfs tail-latency mode only"
+    )
+    @RequestMapping(method = RequestMethod.GET, value = ENDPOINT_REST_STATS_HDFS_READS)
+    public HdfsReadStats fetchHdfsReadStats() {
+        return hdfsService.getReadStats();
+    }
+
     @ApiOperation(
             value = "Creating hive table",
             notes = "Parameters: unique tableId id, absolute hdfs path to directory, path to CSV" +
@@ -110,6 +162,52 @@ public class DemoController {
         return hiveService.selectFromHiveTable(tableId, null);
     }
 
+    @ApiOperation(
+            value = "Reading hive table schema and statistics",
+            notes = "Results are cached per user for a minute, or until table is recreated or removed. Set " +
+                    "'analyze' to compute table statistics in the background, 'forColumns' to compute column " +
+                    "statistics as well. Column statistics are stored in the metastore only, they are not " +
+                    "returned here; read them with DESCRIBE FORMATTED <table> <column>"
+    )
+    @RequestMapping(method = RequestMethod.GET, value = ENDPOINT_REST_HIVE_METADATA_TABLE_ID)
+    public HiveTableMetadata fetchHiveTableMetadata(@PathVariable("tableId") String tableId,
+                                  @RequestParam(value = "analyze", defaultValue = "false") boolean analyze,
+                                  @RequestParam(value = "forColumns", defaultValue = "false") boolean forColumns)
+            throws IOException, LoginException, InterruptedException, URISyntaxException, SQLException {
+        return hiveService.getTableMetadata(tableId, analyze, forColumns);
+    }
+
+    @ApiOperation(
+            value = "Sampling rows from hive table",
+            notes = "Method TABLESAMPLE (default) reads 'percent' of table data in random blocks, " +
+                    "LIMIT returns first rows"
+    )
+    @RequestMapping(method = RequestMethod.GET, value = ENDPOINT_REST_HIVE_SAMPLE_TABLE_ID)
+    public DataSample sampleHiveTable(@PathVariable("tableId") String tableId,
+                                  @RequestParam(value = "size", defaultValue = DEFAULT_SAMPLE_SIZE) int size,
+                                  @RequestParam(value = "method", required = false) SamplingMethod method,
+                                  @RequestParam(value = "percent", defaultValue = DEFAULT_SAMPLE_PERCENT) double percent)
+            throws IOException, LoginException, InterruptedException, URISyntaxException, SQLException {
+        return hiveService.sampleFromHiveTable(tableId, size, method, percent);
+    }
+
+    @ApiOperation(
+            value = "Exporting hive table or column to hdfs directory",
+            notes = "Data is written by hive and does not pass through the application. Non-empty 'hdfsPath' " +
+                    "is refused unless 'overwrite' is true, then its content is replaced. Path overlapping the " +
+                    "table location is always refused. Using relative path is recommended to ensure access permissions"
+    )
+    @RequestMapping(method = RequestMethod.POST, value = ENDPOINT_REST_HIVE_TABLE_ID_EXPORT)
+    public HiveExport exportHiveTable(@PathVariable("tableId") String tableId,
+                                  @RequestParam("hdfsPath") String hdfsPath,
+                                  @RequestParam(value = "columnName", required = false) String columnName,
+                                  @RequestParam(value = "format", defaultValue = "TEXTFILE") ExportFormat format,
+                                  @RequestParam(value = "compression", defaultValue = "NONE") ExportCompression compression,
+                                  @RequestParam(value = "overwrite", defaultValue = "false") boolean overwrite)
+            throws IOException, LoginException, InterruptedException, URISyntaxException, SQLException {
+        return hiveService.exportToHdfs(tableId, columnName, hdfsPath, format, compression, overwrite);
+    }
+
     @ApiOperation(
             value = "Reading column from hive table",
             notes = "Table and column must exist in database associated with hive-shared plan"
@@ -37,6 +37,16 @@ public class OauthUtils {
         return new TapOauthToken(getOAuthTokenFromContext());
     }
 
+    /**
+     * Returns name of user who send the request to DemoController. This method must be executed within
+     * the request scope.
+     *
+     * @return user name from application context
+     */
+    public static String getUserName() {
+        return SecurityContextHolder.getContext().getAuthentication().getName();
+    }
+
     private static String getOAuthTokenFromContext() {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
         OAuth2Authentication oauth2 = (OAuth2Authentication) auth;
@@ -0,0 +1,48 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.trustedanalytics.samples;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+import org.trustedanalytics.samples.model.StartupReport;
+import org.trustedanalytics.samples.services.StartupWarmup;
+
+/**
+ * Readiness probe for the platform. Not secured, see security.ignored in application.yml.
+ */
+@RestController
+public class ReadinessController {
+
+    public static final String ENDPOINT_READINESS = "/readiness";
+
+    private final StartupWarmup startupWarmup;
+
+    @Autowired
+    public ReadinessController(StartupWarmup startupWarmup) {
+        this.startupWarmup = startupWarmup;
+    }
+
+    @RequestMapping(method = RequestMethod.GET, value = ENDPOINT_READINESS)
+    public ResponseEntity<StartupReport> readiness() {
+        StartupReport report = startupWarmup.getReport();
+        return new ResponseEntity<>(report, report.isReady() ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE);
+    }
+}
@@ -0,0 +1,35 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.trustedanalytics.samples.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Output compression with its name in hadoop codec, ORC and Parquet terms.
+ */
+@Getter
+@AllArgsConstructor
+public enum ExportCompression {
+    NONE(null, "NONE", "UNCOMPRESSED"),
+    GZIP("org.apache.hadoop.io.compress.GzipCodec", "ZLIB", "GZIP"),
+    SNAPPY("org.apache.hadoop.io.compress.SnappyCodec", "SNAPPY", "SNAPPY");
+
+    private final String codec;
+    private final String orcCompression;
+    private final String parquetCompression;
+}
@@ -0,0 +1,185 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.trustedanalytics.samples.profiling;
+
+/**
+ * Primitive statistics of a single CSV column. Fields are consumed directly from the line buffer,
+ * nothing is allocated per value.
+ */
+class ColumnAccumulator {
+
+    private static final int MAX_MANTISSA_DIGITS = 18;
+
+    private long count;
+    private long nullCount;
+    private long numericCount;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private double sum;
+    private final HyperLogLog distinct = new HyperLogLog();
+
+    void add(byte[] bytes, int start, int end) {
+        while (start < end && bytes[start] == ' ') {
+            start++;
+        }
+        while (end > start && bytes[end - 1] == ' ') {
+            end--;
+        }
+        // hive writes NULL as \N in text files
+        if (start == end || (end - start == 2 && bytes[start] == '\\' && bytes[start + 1] == 'N')) {
+            addNull();
+            return;
+        }
+        count++;
+        distinct.offer(HyperLogLog.hash(bytes, start, end));
+
+        double value = parseDouble(bytes, start, end);
+        if (!Double.isNaN(value)) {
+            numericCount++;
+            sum += value;
+            if (value < min) {
+                min = value;
+            }
+            if (value > max) {
+                max = value;
+            }
+        }
+    }
+
+    void addNull() {
+        nullCount++;
+    }
+
+    void merge(ColumnAccumulator other) {
+        count += other.count;
+        nullCount += other.nullCount;
+        numericCount += other.numericCount;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        distinct.merge(other.distinct);
+    }
+
+    long getRows() {
+        return count + nullCount;
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    long getNullCount() {
+        return nullCount;
+    }
+
+    long getNumericCount() {
+        return numericCount;
+    }
+
+    Double getMin() {
+        return numericCount > 0 ? min : null;
+    }
+
+    Double getMax() {
+        return numericCount > 0 ? max : null;
+    }
+
+    Double getMean() {
+        return numericCount > 0 ? sum / numericCount : null;
+    }
+
+    long getDistinctEstimate() {
+        return distinct.estimate();
+    }
+
+    /**
+     * Parses plain decimal notation, optionally with exponent, without creating a String.
+     * Digits beyond the 18th significant one are dropped, which is enough for statistics.
+     *
+     * @return parsed value or NaN if the field is not a number
+     */
+    static double parseDouble(byte[] bytes, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+            negative = bytes[i] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean anyDigit = false;
+        for (; i < end && isDigit(bytes[i]); i++) {
+            anyDigit = true;
+            if (digits < MAX_MANTISSA_DIGITS) {
+                mantissa = mantissa * 10 + (bytes[i] - '0');
+                if (mantissa != 0) {
+                    digits++;
+                }
+            } else {
+                scale++;
+            }
+        }
+        if (i < end && bytes[i] == '.') {
+            for (i++; i < end && isDigit(bytes[i]); i++) {
+                anyDigit = true;
+                if (digits < MAX_MANTISSA_DIGITS) {
+                    mantissa = mantissa * 10 + (bytes[i] - '0');
+                    if (mantissa != 0) {
+                        digits++;
+                    }
+                    scale--;
+                }
+            }
+        }
+        if (!anyDigit) {
+            return Double.NaN;
+        }
+
+        if (i < end && (bytes[i] == 'e' || bytes[i] == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+                negativeExponent = bytes[i] == '-';
+                i++;
+            }
+            int exponent = 0;
+            boolean anyExponentDigit = false;
+            for (; i < end && isDigit(bytes[i]); i++) {
+                anyExponentDigit = true;
+                if (exponent < 10000) {
+                    exponent = exponent * 10 + (bytes[i] - '0');
+                }
+            }
+            if (!anyExponentDigit) {
+                return Double.NaN;
+            }
+            scale += negativeExponent ? -exponent : exponent;
+        }
+        if (i != end) {
+            return Double.NaN;
+        }
+
+        double value = scale >= 0 ? mantissa * Math.pow(10, scale) : mantissa / Math.pow(10, -scale);
+        return negative ? -value : value;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+}
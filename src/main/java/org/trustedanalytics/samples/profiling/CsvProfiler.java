@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.trustedanalytics.samples.profiling;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.trustedanalytics.samples.model.ColumnProfile;
+import org.trustedanalytics.samples.model.CsvProfile;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Computes column statistics of CSV files without going through Hive. Files are cut into
+ * line aligned byte ranges which are scanned in parallel on a dedicated fork-join pool.
+ * Compressed files, recognized by extension, are scanned whole through their codec.
+ */
+@Component
+public class CsvProfiler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CsvProfiler.class);
+    static final byte DELIMITER = ',';
+    private static final long MIN_SPLIT_SIZE = 1024L * 1024;
+    private static final long MAX_SPLIT_SIZE = 64L * 1024 * 1024;
+    // a few splits per worker so that uneven files still keep all workers busy
+    private static final int SPLITS_PER_WORKER = 4;
+
+    private final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Profiles given CSV files.
+     *
+     * @param fs configured Hadoop FileSystem
+     * @param directory directory the files come from, reported back in the profile
+     * @param files files to scan
+     * @param header first(header) row of CSV file; lines equal to it at the beginning of a file are skipped
+     * @return column statistics
+     *
+     * @throws IOException io exception
+     */
+    public CsvProfile profile(FileSystem fs, String directory, List<FileStatus> files, String header) throws IOException {
+        String[] columnNames = header.split(String.valueOf((char) DELIMITER), -1);
+        CompressionCodecFactory codecs = new CompressionCodecFactory(fs.getConf());
+        List<FileSplit> splits = createSplits(files, codecs);
+        long bytes = files.stream().mapToLong(FileStatus::getLen).sum();
+        LOGGER.info("Profiling {} files ({} bytes) in {} splits", files.size(), bytes, splits.size());
+
+        ColumnAccumulator[] accumulators;
+        if (splits.isEmpty()) {
+            accumulators = new ColumnAccumulator[columnNames.length];
+            for (int i = 0; i < accumulators.length; i++) {
+                accumulators[i] = new ColumnAccumulator();
+            }
+        } else {
+            try {
+                accumulators = pool.invoke(new ProfileTask(fs, codecs, splits, 0, splits.size(),
+                        header.getBytes(StandardCharsets.UTF_8), columnNames.length));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+
+        List<ColumnProfile> columns = new ArrayList<>(columnNames.length);
+        for (int i = 0; i < columnNames.length; i++) {
+            ColumnAccumulator accumulator = accumulators[i];
+            columns.add(new ColumnProfile(columnNames[i].trim(), accumulator.getCount(), accumulator.getNullCount(),
+                    accumulator.getNumericCount(), accumulator.getMin(), accumulator.getMax(), accumulator.getMean(),
+                    accumulator.getDistinctEstimate()));
+        }
+        long rows = accumulators.length > 0 ? accumulators[0].getRows() : 0;
+        return new CsvProfile(directory, files.size(), splits.size(), bytes, rows, columns);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private List<FileSplit> createSplits(List<FileStatus> files, CompressionCodecFactory codecs) {
+        long totalBytes = files.stream().mapToLong(FileStatus::getLen).sum();
+        long splitSize = totalBytes / ((long) pool.getParallelism() * SPLITS_PER_WORKER);
+        splitSize = Math.max(MIN_SPLIT_SIZE, Math.min(MAX_SPLIT_SIZE, splitSize));
+
+        List<FileSplit> splits = new ArrayList<>();
+        for (FileStatus file : files) {
+            if (codecs.getCodec(file.getPath()) != null) {
+                // compressed stream can only be read from the beginning
+                splits.add(new FileSplit(file.getPath(), 0, file.getLen()));
+                continue;
+            }
+            for (long start = 0; start < file.getLen(); start += splitSize) {
+                splits.add(new FileSplit(file.getPath(), start, Math.min(splitSize, file.getLen() - start)));
+            }
+        }
+        return splits;
+    }
+}
@@ -0,0 +1,33 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.trustedanalytics.samples.profiling;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.apache.hadoop.fs.Path;
+
+/**
+ * Byte range of a file scanned by a single profiling task. Lines crossing range boundaries
+ * belong to the range they start in.
+ */
+@Data
+@AllArgsConstructor
+public class FileSplit {
+    private Path path;
+    private long start;
+    private long length;
+}
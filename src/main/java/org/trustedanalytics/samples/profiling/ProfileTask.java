@@ -0,0 +1,160 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.trustedanalytics.samples.profiling;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CodecPool;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.Decompressor;
+import org.apache.hadoop.util.LineReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Scans a range of splits, forking until every task has a single split, and merges
+ * per-column accumulators on the way back.
+ */
+class ProfileTask extends RecursiveTask<ColumnAccumulator[]> {
+
+    private static final int READ_BUFFER_SIZE = 128 * 1024;
+
+    private final FileSystem fs;
+    private final CompressionCodecFactory codecs;
+    private final List<FileSplit> splits;
+    private final int from;
+    private final int to;
+    private final byte[] header;
+    private final int columnCount;
+
+    ProfileTask(FileSystem fs, CompressionCodecFactory codecs, List<FileSplit> splits, int from, int to,
+                byte[] header, int columnCount) {
+        this.fs = fs;
+        this.codecs = codecs;
+        this.splits = splits;
+        this.from = from;
+        this.to = to;
+        this.header = header;
+        this.columnCount = columnCount;
+    }
+
+    @Override
+    protected ColumnAccumulator[] compute() {
+        if (to - from == 1) {
+            try {
+                return scan(splits.get(from));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        int middle = (from + to) >>> 1;
+        ProfileTask left = new ProfileTask(fs, codecs, splits, from, middle, header, columnCount);
+        ProfileTask right = new ProfileTask(fs, codecs, splits, middle, to, header, columnCount);
+        left.fork();
+        ColumnAccumulator[] result = right.compute();
+        ColumnAccumulator[] other = left.join();
+        for (int i = 0; i < columnCount; i++) {
+            result[i].merge(other[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Reads every line starting within the split. Like hadoop LineRecordReader, a split not starting
+     * at offset 0 skips its first (partial) line and reads one line past its end. Split of compressed
+     * file always covers the whole file and is read through the codec.
+     */
+    private ColumnAccumulator[] scan(FileSplit split) throws IOException {
+        ColumnAccumulator[] accumulators = new ColumnAccumulator[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            accumulators[i] = new ColumnAccumulator();
+        }
+
+        CompressionCodec codec = codecs.getCodec(split.getPath());
+        if (codec != null) {
+            Decompressor decompressor = CodecPool.getDecompressor(codec);
+            try (InputStream in = codec.createInputStream(fs.open(split.getPath()), decompressor)) {
+                // positions count decompressed bytes, so the compressed length does not bound them
+                readLines(new LineReader(in, READ_BUFFER_SIZE), 0, Long.MAX_VALUE, accumulators);
+            } finally {
+                CodecPool.returnDecompressor(decompressor);
+            }
+            return accumulators;
+        }
+
+        long position = split.getStart();
+        try (FSDataInputStream in = fs.open(split.getPath())) {
+            in.seek(position);
+            readLines(new LineReader(in, READ_BUFFER_SIZE), position, position + split.getLength(), accumulators);
+        }
+        return accumulators;
+    }
+
+    private void readLines(LineReader reader, long position, long end, ColumnAccumulator[] accumulators) throws IOException {
+        Text line = new Text();
+        if (position != 0) {
+            position += reader.readLine(line);
+        }
+        while (position <= end) {
+            int consumed = reader.readLine(line);
+            if (consumed == 0) {
+                break;
+            }
+            boolean isHeader = position == 0 && isHeader(line);
+            position += consumed;
+            if (!isHeader) {
+                parseLine(line, accumulators);
+            }
+        }
+    }
+
+    private boolean isHeader(Text line) {
+        if (line.getLength() != header.length) {
+            return false;
+        }
+        byte[] bytes = line.getBytes();
+        for (int i = 0; i < header.length; i++) {
+            if (bytes[i] != header[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void parseLine(Text line, ColumnAccumulator[] accumulators) {
+        byte[] bytes = line.getBytes();
+        int length = line.getLength();
+        int column = 0;
+        int fieldStart = 0;
+        for (int i = 0; i <= length && column < columnCount; i++) {
+            if (i == length || bytes[i] == CsvProfiler.DELIMITER) {
+                accumulators[column++].add(bytes, fieldStart, i);
+                fieldStart = i + 1;
+            }
+        }
+        // missing trailing fields
+        for (; column < columnCount; column++) {
+            accumulators[column].addNull();
+        }
+    }
+}
@@ -17,33 +17,77 @@
 package org.trustedanalytics.samples.services;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathFilter;
 import org.apache.hadoop.fs.permission.FsAction;
 import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.util.LineReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.trustedanalytics.hadoop.config.client.*;
 import org.trustedanalytics.hadoop.config.client.helper.Hdfs;
 import org.trustedanalytics.samples.OauthUtils;
+import org.trustedanalytics.samples.model.CsvProfile;
+import org.trustedanalytics.samples.model.DataSample;
+import org.trustedanalytics.samples.model.HdfsFile;
+import org.trustedanalytics.samples.model.HdfsReadStats;
+import org.trustedanalytics.samples.model.SamplingMethod;
+import org.trustedanalytics.samples.profiling.CsvProfiler;
 import org.trustedanalytics.samples.utils.FsPermissionHelper;
 
 import javax.security.auth.login.LoginException;
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.InputStream;
 import java.io.StringWriter;
 import java.net.URISyntaxException;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static java.util.stream.Collectors.toList;
 
 @Service
 @SuppressWarnings("checkstyle:javadocmethod")
 public class HdfsService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(HdfsService.class);
+    public static final int MAX_SAMPLE_SIZE = 10000;
+    // files bigger than this are sampled by seeking instead of streaming the whole content
+    private static final long RESERVOIR_MAX_FILE_SIZE = 64L * 1024 * 1024;
+    private static final int MAX_SAMPLE_OFFSETS = 32;
+    // skips hidden and bookkeeping files such as _SUCCESS
+    private static final PathFilter DATA_FILES =
+            path -> !path.getName().startsWith("_") && !path.getName().startsWith(".");
+
+    // chunk size of positional reads, only positional reads are hedged by the dfs client
+    private static final int PREAD_CHUNK_SIZE = 1024 * 1024;
+
+    @Autowired
+    CsvProfiler csvProfiler;
+
+    @Autowired
+    TailLatencyGuard tailLatencyGuard;
+
+    // parsed from VCAP_SERVICES once, service bindings do not change while the application runs
+    private volatile Path workingDirectory;
 
     /**
      *  Creates file on hdfs.
@@ -84,6 +128,35 @@ public class HdfsService {
         return createDirectory(fs, directoryPath);
     }
 
+    /**
+     *  Creates target directory for export. Directory equal to, inside or containing protected
+     *  location is refused, and so is non-empty directory unless overwrite is set.
+     *
+     *  @param directoryPath relative path to the directory
+     *  @param protectedLocation location that must not be overwritten, e.g. of exported table, may be null
+     *  @param overwrite if true, non-empty directory is accepted
+     *
+     *  @return full hdfs path to directory
+     *
+     *
+     * @throws IOException io exception
+     * @throws LoginException login exception
+     * @throws InterruptedException interrupted exception
+     * @throws URISyntaxException uri syntax exception
+     */
+
+    public Path createExportDirectory(String directoryPath, String protectedLocation, boolean overwrite) throws IOException, LoginException, InterruptedException, URISyntaxException {
+        FileSystem fs = initializeFileSystemWithContext();
+        Path path = fs.makeQualified(new Path(directoryPath));
+        if (protectedLocation != null && overlaps(path, fs.makeQualified(new Path(protectedLocation)))) {
+            throw new IllegalArgumentException("Directory " + path + " overlaps table location " + protectedLocation);
+        }
+        if (!overwrite && hasContent(fs, path)) {
+            throw new IllegalArgumentException("Directory " + path + " is not empty, set overwrite to replace its content");
+        }
+        return createDirectory(fs, directoryPath);
+    }
+
     /**
      * Reads file from hdfs.
      *
@@ -114,13 +187,132 @@ public class HdfsService {
      * @throws URISyntaxException uri syntax exception
      */
     public String readFileHeader(String filePath) throws IOException, LoginException, InterruptedException, URISyntaxException {
+        FileSystem fs = initializeFileSystemWithContext();
+        return readFileHeader(fs, new Path(filePath));
+    }
+
+    /**
+     * Computes column statistics of CSV files in directory without creating hive table.
+     *
+     * @param directoryPath relative path to directory with CSV files
+     * @param headerFilePath path to file with header, first file in directory is used if null
+     *
+     * @return statistics of every column described by header
+     *
+     * @throws IOException io exception
+     * @throws LoginException login exception
+     * @throws InterruptedException interrupted exception
+     * @throws URISyntaxException uri syntax exception
+     */
+    public CsvProfile profileDirectory(String directoryPath, String headerFilePath) throws IOException, LoginException, InterruptedException, URISyntaxException {
+        FileSystem fs = initializeFileSystemWithContext();
+        FileStatus[] statuses = tailLatencyGuard.withRetries("listStatus " + directoryPath,
+                () -> fs.listStatus(new Path(directoryPath), DATA_FILES));
+        List<FileStatus> files = Arrays.stream(statuses)
+                .filter(FileStatus::isFile)
+                .collect(toList());
+        if (files.isEmpty()) {
+            throw new FileNotFoundException("No data files found in " + directoryPath);
+        }
+
+        Path headerPath = headerFilePath != null ? new Path(headerFilePath) : files.get(0).getPath();
+        String header = readFileHeader(fs, headerPath);
+        if (header == null) {
+            throw new IOException("Could not read header from empty file " + headerPath);
+        }
+        return csvProfiler.profile(fs, directoryPath, files, header);
+    }
+
+    /**
+     * Reads a random subset of file lines.
+     *
+     * @param filePath relative path to hdfs file
+     * @param size number of lines to return, capped at MAX_SAMPLE_SIZE
+     * @param method RESERVOIR or BLOCK_OFFSET, if null the method is chosen by file size;
+     *               RESERVOIR falls back to BLOCK_OFFSET for files too big to stream
+     *
+     * @return sampled lines together with the method used
+     *
+     * @throws IOException io exception
+     * @throws LoginException login exception
+     * @throws InterruptedException interrupted exception
+     * @throws URISyntaxException uri syntax exception
+     */
+    public DataSample sampleFile(String filePath, int size, SamplingMethod method) throws IOException, LoginException, InterruptedException, URISyntaxException {
         FileSystem fs = initializeFileSystemWithContext();
         Path path = new Path(filePath);
-        String header ="";
-        try (BufferedReader br=new BufferedReader(new InputStreamReader(fs.open(path))) ){
-            header = br.readLine();
+        int sampleSize = Math.max(1, Math.min(size, MAX_SAMPLE_SIZE));
+        long length = getFileStatus(fs, path).getLen();
+
+        SamplingMethod used = method;
+        if (used == null || used == SamplingMethod.RESERVOIR) {
+            // streaming is bounded by file size, keep latency bounded even if RESERVOIR was requested
+            used = length <= RESERVOIR_MAX_FILE_SIZE ? SamplingMethod.RESERVOIR : SamplingMethod.BLOCK_OFFSET;
+        }
+        LOGGER.info("Sampling {} lines from {} using {}", sampleSize, filePath, used);
+
+        switch (used) {
+            case RESERVOIR:
+                return new DataSample(filePath, used, reservoirSample(fs, path, sampleSize));
+            case BLOCK_OFFSET:
+                return new DataSample(filePath, used, blockOffsetSample(fs, path, length, sampleSize));
+            default:
+                throw new IllegalArgumentException("Sampling method " + used + " is not supported for hdfs files");
         }
-        return header;
+    }
+
+    /**
+     * Applies permissions and ACLs of createDirectory to existing directory, e.g. one recreated
+     * by hive, and to files inside it.
+     *
+     * @param directoryPath absolute path to directory
+     *
+     * @return files in directory with their sizes
+     *
+     * @throws IOException io exception
+     * @throws LoginException login exception
+     * @throws InterruptedException interrupted exception
+     * @throws URISyntaxException uri syntax exception
+     */
+    public List<HdfsFile> shareDirectory(String directoryPath) throws IOException, LoginException, InterruptedException, URISyntaxException {
+        FileSystem fs = initializeFileSystemWithContext();
+        Path path = new Path(directoryPath);
+        setDirectoryPermissions(fs, path);
+
+        FileStatus[] statuses = tailLatencyGuard.withRetries("listStatus " + directoryPath,
+                () -> fs.listStatus(path, DATA_FILES));
+        List<HdfsFile> files = new ArrayList<>();
+        for (FileStatus status : statuses) {
+            if (status.isFile()) {
+                fs.setPermission(status.getPath(), FsPermission.valueOf("-rwxrwxrwx"));
+                fs.modifyAclEntries(status.getPath(), FsPermissionHelper.getAclsForTechnicalUsers(FsPermissionHelper.getToolUsers(), FsAction.ALL));
+                files.add(new HdfsFile(status.getPath().toString(), status.getLen()));
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Checks that hdfs is reachable with credentials of bound services, without user token.
+     *
+     * @throws IOException io exception
+     * @throws LoginException login exception
+     * @throws InterruptedException interrupted exception
+     * @throws URISyntaxException uri syntax exception
+     */
+    public void checkConnection() throws IOException, LoginException, InterruptedException, URISyntaxException {
+        FileSystem fs = Hdfs.newInstance().createFileSystem();
+        Path workingDirectory = setupWorkingDirectory(fs);
+        getFileStatus(fs, workingDirectory);
+    }
+
+    /**
+     * Hedged read and retry counters of tail-latency mode.
+     *
+     * @return read statistics
+     */
+    public HdfsReadStats getReadStats() {
+        return tailLatencyGuard.getStats();
     }
 
     /**
@@ -138,7 +330,7 @@ public class HdfsService {
         try ( OutputStream os = fs.create(path) ) {
             os.write(text.getBytes(Charset.forName("UTF-8")));
             fs.setPermission(path, FsPermission.valueOf("-rwxrwxrwx"));
-            return fs.getFileStatus(path).getPath();
+            return getFileStatus(fs, path).getPath();
         }
     }
 
@@ -154,10 +346,82 @@ public class HdfsService {
     private Path createDirectory(FileSystem fs, String filePath) throws IOException {
         Path path = new Path(filePath);
         fs.mkdirs(path);
+        setDirectoryPermissions(fs, path);
+        return getFileStatus(fs, path).getPath();
+    }
+
+    /**
+     * Checks whether path exists and is a file or a non-empty directory.
+     *
+     * @param fs configured Hadoop FileSystem
+     * @param path path to check
+     * @return true if there is anything at path
+     * @throws IOException io exception
+     */
+    private boolean hasContent(FileSystem fs, Path path) throws IOException {
+        try {
+            return tailLatencyGuard.withRetries("listStatus " + path, () -> fs.listStatus(path)).length > 0;
+        } catch (FileNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Checks whether one path is equal to or inside the other, ignoring scheme and authority
+     * so that paths with and without namenode address compare equal.
+     *
+     * @param first qualified path
+     * @param second qualified path
+     * @return true if paths overlap
+     */
+    private static boolean overlaps(Path first, Path second) {
+        String a = Path.getPathWithoutSchemeAndAuthority(first).toString();
+        String b = Path.getPathWithoutSchemeAndAuthority(second).toString();
+        return isSameOrInside(a, b) || isSameOrInside(b, a);
+    }
+
+    private static boolean isSameOrInside(String child, String parent) {
+        return child.equals(parent) || child.startsWith(parent.endsWith(Path.SEPARATOR) ? parent : parent + Path.SEPARATOR);
+    }
+
+    /**
+     * Sets permissions and ACLs for technical users on directory, same as for created directories.
+     *
+     * @param fs configured Hadoop FileSystem
+     * @param path path to the directory
+     * @throws IOException io exception
+     */
+    private void setDirectoryPermissions(FileSystem fs, Path path) throws IOException {
         fs.setPermission(path, FsPermission.valueOf("drwxrwxrwx"));
         fs.modifyAclEntries(path, FsPermissionHelper.getDefaultAclsForTechnicalUsers(FsPermissionHelper.getToolUsers(), FsAction.ALL));
         fs.modifyAclEntries(path, FsPermissionHelper.getAclsForTechnicalUsers(FsPermissionHelper.getToolUsers(), FsAction.ALL));
-        return fs.getFileStatus(path).getPath();
+    }
+
+    /**
+     * Reads first line from file. Compressed files, recognized by extension, are read through their codec.
+     *
+     * @param fs configured Hadoop FileSystem
+     * @param path path to the file
+     * @return first line of file, null if file is empty
+     *
+     * @throws IOException io exception
+     */
+    private String readFileHeader(FileSystem fs, Path path) throws IOException {
+        CompressionCodec codec = new CompressionCodecFactory(fs.getConf()).getCodec(path);
+        if (codec != null) {
+            // compressed stream can only be read from the beginning, positional reads do not apply
+            return tailLatencyGuard.withReadDeadline(path.toString(), () -> fs.open(path), in -> {
+                try (BufferedReader br = new BufferedReader(new InputStreamReader(codec.createInputStream(in)))) {
+                    return br.readLine();
+                }
+            });
+        }
+        if (tailLatencyGuard.isEnabled()) {
+            return tailLatencyGuard.withReadDeadline(path.toString(), () -> fs.open(path), in -> preadFirstLine(path, in));
+        }
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(fs.open(path)))) {
+            return br.readLine();
+        }
     }
 
     /**
@@ -170,11 +434,168 @@ public class HdfsService {
      * @throws io exception
      */
     private String readFileFromHdfs(FileSystem fs, String filePath) throws IOException {
+        if (tailLatencyGuard.isEnabled()) {
+            Path path = new Path(filePath);
+            return tailLatencyGuard.withReadDeadline(filePath, () -> fs.open(path), in -> preadFully(fs, path, in));
+        }
         try (InputStream is = fs.open(new Path(filePath))) {
             return IOUtils.toString(is);
         }
     }
 
+    /**
+     * Reads whole file with positional reads.
+     *
+     * @param fs configured Hadoop FileSystem
+     * @param path path to the file
+     * @param in stream opened for the file
+     * @return String containing file
+     *
+     * @throws IOException io exception, InterruptedIOException when interrupted
+     */
+    private String preadFully(FileSystem fs, Path path, FSDataInputStream in) throws IOException {
+        long length = getFileStatus(fs, path).getLen();
+        ByteArrayOutputStream content = new ByteArrayOutputStream((int) Math.min(length, Integer.MAX_VALUE - 8));
+        byte[] buffer = new byte[(int) Math.min(length, PREAD_CHUNK_SIZE)];
+        for (long position = 0; position < length; position += buffer.length) {
+            checkInterrupted(path);
+            int size = (int) Math.min(buffer.length, length - position);
+            in.readFully(position, buffer, 0, size);
+            content.write(buffer, 0, size);
+        }
+        return new String(content.toByteArray(), Charset.defaultCharset());
+    }
+
+    /**
+     * Reads first line of file with positional reads, chunk by chunk until line end is found.
+     *
+     * @param path path to the file
+     * @param in stream opened for the file
+     * @return first line of file, null if file is empty
+     *
+     * @throws IOException io exception, InterruptedIOException when interrupted
+     */
+    private String preadFirstLine(Path path, FSDataInputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        byte[] buffer = new byte[64 * 1024];
+        long position = 0;
+        int read;
+        while ((read = in.read(position, buffer, 0, buffer.length)) > 0) {
+            for (int i = 0; i < read; i++) {
+                if (buffer[i] == '\n' || buffer[i] == '\r') {
+                    line.write(buffer, 0, i);
+                    return new String(line.toByteArray(), Charset.defaultCharset());
+                }
+            }
+            line.write(buffer, 0, read);
+            position += read;
+            checkInterrupted(path);
+        }
+        return position == 0 ? null : new String(line.toByteArray(), Charset.defaultCharset());
+    }
+
+    private static void checkInterrupted(Path path) throws InterruptedIOException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Reading " + path + " interrupted");
+        }
+    }
+
+    private FileStatus getFileStatus(FileSystem fs, Path path) throws IOException {
+        return tailLatencyGuard.withRetries("getFileStatus " + path, () -> fs.getFileStatus(path));
+    }
+
+    /**
+     * Streams the whole file keeping uniformly chosen lines (reservoir sampling, algorithm R).
+     *
+     * @param fs configured Hadoop FileSystem
+     * @param path path to the file
+     * @param size number of lines to keep
+     * @return sampled lines in file order of their selection
+     *
+     * @throws IOException io exception
+     */
+    private List<String> reservoirSample(FileSystem fs, Path path, int size) throws IOException {
+        List<String> reservoir = new ArrayList<>(size);
+        Random random = ThreadLocalRandom.current();
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(fs.open(path), StandardCharsets.UTF_8))) {
+            long seen = 0;
+            String line;
+            while ((line = br.readLine()) != null) {
+                seen++;
+                if (reservoir.size() < size) {
+                    reservoir.add(line);
+                } else {
+                    long slot = (long) (random.nextDouble() * seen);
+                    if (slot < size) {
+                        reservoir.set((int) slot, line);
+                    }
+                }
+            }
+        }
+        return reservoir;
+    }
+
+    /**
+     * Seeks to random offsets spread over the file and reads whole lines from each of them.
+     * Only the sampled regions are read, so the cost does not depend on file length.
+     *
+     * @param fs configured Hadoop FileSystem
+     * @param path path to the file
+     * @param length file length in bytes
+     * @param size number of lines to return
+     * @return sampled lines
+     *
+     * @throws IOException io exception
+     */
+    private List<String> blockOffsetSample(FileSystem fs, Path path, long length, int size) throws IOException {
+        List<String> sample = new ArrayList<>(size);
+        if (length == 0) {
+            return sample;
+        }
+        int offsetCount = Math.min(size, MAX_SAMPLE_OFFSETS);
+        int linesPerOffset = (size + offsetCount - 1) / offsetCount;
+
+        // one random offset inside each of offsetCount equal segments, sorted so seeks only go forward
+        long[] offsets = new long[offsetCount];
+        Random random = ThreadLocalRandom.current();
+        for (int i = 0; i < offsetCount; i++) {
+            long segmentStart = length * i / offsetCount;
+            long segmentEnd = length * (i + 1) / offsetCount;
+            offsets[i] = segmentStart + (long) (random.nextDouble() * Math.max(1, segmentEnd - segmentStart));
+        }
+        Arrays.sort(offsets);
+
+        Text line = new Text();
+        long position = 0;
+        try (FSDataInputStream in = fs.open(path)) {
+            for (long offset : offsets) {
+                if (sample.size() >= size || offset >= length) {
+                    break;
+                }
+                if (offset < position) {
+                    // previous region already covers this offset
+                    continue;
+                }
+                in.seek(offset);
+                position = offset;
+                LineReader reader = new LineReader(in);
+                if (offset > 0) {
+                    // landed in the middle of a line, skip to the next full one
+                    position += reader.readLine(line);
+                }
+                for (int read = 0; read < linesPerOffset && sample.size() < size; read++) {
+                    int consumed = reader.readLine(line);
+                    if (consumed == 0) {
+                        break;
+                    }
+                    position += consumed;
+                    sample.add(line.toString());
+                }
+            }
+        }
+        return sample;
+    }
+
     /**
      * Create hadoop File System object with jwtToken. This object will have permissions specific to the
      * TAP user represented by jwtToken. Working directory will be set to the hdfs-shared plan instance folder.
@@ -190,9 +611,32 @@ public class HdfsService {
     private FileSystem initializeFileSystemWithContext() throws IOException, LoginException, InterruptedException, URISyntaxException {
         FileSystem fs = Hdfs.newInstance().createFileSystem(OauthUtils.getJwtToken());
         setupWorkingDirectory(fs);
+        tailLatencyGuard.register(fs);
         return fs;
     }
 
+    /**
+     * Working directory specified by hdfs-shared instance, read from application environment
+     * on first use and cached.
+     *
+     * @return Path to working directory
+     *
+     * @throws IOException io exception
+     */
+    public Path getWorkingDirectory() throws IOException {
+        Path path = workingDirectory;
+        if (path == null) {
+            AppConfiguration appEnvConf = Configurations.newInstanceFromEnv();
+            ServiceInstanceConfiguration hdfsConf = appEnvConf.getServiceConfig(ServiceType.HDFS_TYPE);
+
+            // Fetching home directory URI from application environment - ServiceType.HDFS_TYPE
+            // the URI is specific for hdfs-shared instance
+            path = new Path(hdfsConf.getProperty(Property.HDFS_URI).get());
+            workingDirectory = path;
+        }
+        return path;
+    }
+
     /**
      * Setup FileSystem working directory for FileSystem object.
      *
@@ -204,13 +648,7 @@ public class HdfsService {
      * @throws IOException io exception
      */
     private Path setupWorkingDirectory(FileSystem fs) throws IOException {
-        AppConfiguration appEnvConf = Configurations.newInstanceFromEnv();
-        ServiceInstanceConfiguration hdfsConf = appEnvConf.getServiceConfig(ServiceType.HDFS_TYPE);
-
-        // Fetching home directory URI from application environment - ServiceType.HDFS_TYPE
-        // the URI is specific for hdfs-shared instance
-
-        Path path = new Path(hdfsConf.getProperty(Property.HDFS_URI).get());
+        Path path = getWorkingDirectory();
 
         // We will have read/write access to directory described in path variable
         fs.setWorkingDirectory(path);
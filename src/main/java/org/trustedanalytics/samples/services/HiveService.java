@@ -21,16 +21,39 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.trustedanalytics.hadoop.config.client.helper.Hive;
+import org.trustedanalytics.hadoop.config.client.oauth.TapOauthToken;
 import org.trustedanalytics.samples.OauthUtils;
+import org.trustedanalytics.samples.model.DataSample;
+import org.trustedanalytics.samples.model.ExportCompression;
+import org.trustedanalytics.samples.model.ExportFormat;
+import org.trustedanalytics.samples.model.HdfsFile;
+import org.trustedanalytics.samples.model.HiveColumn;
+import org.trustedanalytics.samples.model.HiveExport;
+import org.trustedanalytics.samples.model.HiveTableMetadata;
+import org.trustedanalytics.samples.model.SamplingMethod;
 import org.apache.commons.lang3.StringUtils;
 
+import javax.annotation.PreDestroy;
 import javax.security.auth.login.LoginException;
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.net.URISyntaxException;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Provides basic Hive access.
@@ -43,10 +66,26 @@ public class HiveService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(HiveService.class);
     private static final String DELIMITER = ",";
+    private static final String LOCATION_ROW = "Location:";
+    private static final String STAT_NUM_ROWS = "numRows";
+    private static final String STAT_RAW_DATA_SIZE = "rawDataSize";
+    private static final String STAT_TOTAL_SIZE = "totalSize";
+    private static final String STAT_NUM_FILES = "numFiles";
+    private static final int CHECK_QUERY_TIMEOUT_SECONDS = 10;
+    // bounds staleness for changes made outside this instance
+    private static final long METADATA_TTL_MILLIS = TimeUnit.MINUTES.toMillis(1);
 
     @Autowired
     HdfsService hdfsService;
 
+    // DESCRIBE FORMATTED results by lower-cased table id and user name; hive checks access with the user's
+    // token, so results are never shared between users. Dropped whenever the table changes here. A table
+    // entry is removed once it holds no unexpired result and no DESCRIBE is running for it.
+    private final Map<String, TableMetadataEntry> metadataCache = new ConcurrentHashMap<>();
+    private final AtomicLong lastMetadataSweep = new AtomicLong();
+    private final Set<String> pendingAnalyses = ConcurrentHashMap.newKeySet();
+    private final ExecutorService analyzeExecutor = Executors.newSingleThreadExecutor();
+
     /**
      *   Creates external hive table from hdfs directory. The assumption is that directory contains
      *   CSV file(s), delimited by ","
@@ -76,6 +115,8 @@ public class HiveService {
             LOGGER.info("Executing Hive Sql statement {} ", sql);
             Statement stmt = hiveConenction.createStatement();
             stmt.executeUpdate(sql);
+        } finally {
+            invalidateMetadata(tableId);
         }
     }
 
@@ -101,6 +142,77 @@ public class HiveService {
             LOGGER.info("Executing Hive Sql statement {} ", sql);
             Statement stmt = hiveConenction.createStatement();
             stmt.executeUpdate(sql);
+        } finally {
+            invalidateMetadata(tableId);
+        }
+    }
+
+    /**
+     *   Fetching table schema and statistics. Results of DESCRIBE FORMATTED are cached per user
+     *   for a minute, or until the table is recreated, removed or analyzed through this instance,
+     *   so repeated calls do not hit HiveServer2.
+     *
+     *   @param tableId table id
+     *   @param analyze if true, ANALYZE TABLE is scheduled in the background to refresh statistics
+     *   @param forColumns if true, column level statistics are computed as well; they are stored
+     *                     in the metastore only and are not part of the returned metadata
+     *   @return table metadata
+     *
+     *
+     * @throws IOException io exception
+     * @throws LoginException login exception
+     * @throws InterruptedException interrupted exception
+     * @throws URISyntaxException uri syntax exception
+     * @throws SQLException sql exception
+     */
+    public HiveTableMetadata getTableMetadata(String tableId, boolean analyze, boolean forColumns) throws IOException, LoginException, InterruptedException, URISyntaxException, SQLException {
+        String key = cacheKey(tableId);
+        String userName = OauthUtils.getUserName();
+        TapOauthToken jwtToken = OauthUtils.getJwtToken();
+
+        HiveTableMetadata metadata = getCachedMetadata(key, userName);
+        if (metadata == null) {
+            sweepMetadata();
+            long version = beginDescribe(key);
+            try {
+                metadata = describeTable(jwtToken, tableId);
+            } finally {
+                endDescribe(key, userName, version, metadata);
+            }
+        }
+        if (analyze) {
+            scheduleAnalyze(jwtToken, tableId, forColumns);
+        }
+        return new HiveTableMetadata(metadata.getName(), metadata.getColumns(), metadata.getLocation(), metadata.getRowCount(),
+                metadata.getRawDataSize(), metadata.getTotalSize(), metadata.getNumFiles(),
+                pendingAnalyses.contains(key));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        analyzeExecutor.shutdownNow();
+    }
+
+    /**
+     *   Checks that HiveServer2 is reachable with credentials of bound services, without user token.
+     *
+     *
+     * @throws IOException io exception
+     * @throws LoginException login exception
+     * @throws InterruptedException interrupted exception
+     * @throws URISyntaxException uri syntax exception
+     * @throws SQLException sql exception
+     */
+    public void checkConnection() throws IOException, LoginException, InterruptedException, URISyntaxException, SQLException {
+        try (Connection hiveConenction = Hive.newInstance().getConnection();
+             Statement stmt = hiveConenction.createStatement()) {
+            try {
+                stmt.setQueryTimeout(CHECK_QUERY_TIMEOUT_SECONDS);
+            } catch (SQLException e) {
+                // older hive drivers do not support query timeout, the caller bounds the check then
+                LOGGER.debug("Query timeout not supported by hive driver", e);
+            }
+            stmt.execute("show databases");
         }
     }
 
@@ -135,9 +247,7 @@ public class HiveService {
                     String result = "";
                     while (rs.next()) {
                         if (rs != null) {
-                            for (int i = 1; i <= rs.getMetaData().getColumnCount(); ++i) {
-                                result += rs.getString(i) + " ";
-                            }
+                            result += formatRow(rs);
                             result += "\n";
                         }
                     }
@@ -147,6 +257,147 @@ public class HiveService {
         }
     }
 
+    /**
+     *   Fetching a subset of hive table rows. TABLESAMPLE reads a given percent of table data in
+     *   randomly chosen hdfs blocks (with a new seed on every call) and returns first rows of them.
+     *   LIMIT returns first rows of the table. Neither scans the whole table.
+     *
+     *   @param tableId table id
+     *   @param size number of rows to return, capped at HdfsService.MAX_SAMPLE_SIZE
+     *   @param method TABLESAMPLE or LIMIT, TABLESAMPLE if null
+     *   @param percent percent of table data read by TABLESAMPLE, at least one block is read
+     *   @return sampled rows together with the method used
+     *
+     *
+     * @throws IOException io exception
+     * @throws LoginException login exception
+     * @throws InterruptedException interrupted exception
+     * @throws URISyntaxException uri syntax exception
+     * @throws SQLException sql exception
+     */
+    public DataSample sampleFromHiveTable(String tableId, int size, SamplingMethod method, double percent) throws IOException, LoginException, InterruptedException, URISyntaxException, SQLException {
+        int sampleSize = Math.max(1, Math.min(size, HdfsService.MAX_SAMPLE_SIZE));
+        SamplingMethod used = method == null ? SamplingMethod.TABLESAMPLE : method;
+
+        List<String> settings = new ArrayList<>();
+        String sql;
+        switch (used) {
+            case TABLESAMPLE:
+                if (!(percent > 0 && percent <= 100)) {
+                    throw new IllegalArgumentException("Sample percent must be in (0, 100], got " + percent);
+                }
+                // block sampling picks the same blocks for the same seed
+                settings.add("set hive.sample.seednumber=" + ThreadLocalRandom.current().nextInt(Integer.MAX_VALUE));
+                sql = "select * from " + tableId + " tablesample(" + BigDecimal.valueOf(percent).toPlainString()
+                        + " percent) limit " + sampleSize;
+                break;
+            case LIMIT:
+                sql = "select * from " + tableId + " limit " + sampleSize;
+                break;
+            default:
+                throw new IllegalArgumentException("Sampling method " + used + " is not supported for hive tables");
+        }
+
+        try (Connection hiveConenction = Hive.newInstance().getConnection(OauthUtils.getJwtToken());
+             Statement stmt = hiveConenction.createStatement()) {
+            stmt.setMaxRows(sampleSize);
+            for (String setting : settings) {
+                LOGGER.info("Executing Hive Sql statement {}", setting);
+                stmt.execute(setting);
+            }
+
+            LOGGER.info("Executing Hive Sql statement {}", sql);
+            try (ResultSet rs = stmt.executeQuery(sql)) {
+                List<String> rows = new ArrayList<>(sampleSize);
+                while (rs.next()) {
+                    rows.add(formatRow(rs));
+                }
+                return new DataSample(tableId, used, rows);
+            }
+        }
+    }
+
+    /**
+     *   Writes query result to hdfs directory with INSERT OVERWRITE DIRECTORY, so the data is
+     *   moved by hive and never passes through the application. Hive replaces existing directory
+     *   content, so non-empty directory is refused unless overwrite is set, and directory overlapping
+     *   source table location is always refused.
+     *
+     *   @param tableId table id
+     *   @param columnName column name, whole table is exported if empty
+     *   @param directoryPath relative path to target directory
+     *   @param format output file format
+     *   @param compression output compression
+     *   @param overwrite if true, existing content of target directory is replaced
+     *   @return output directory with written files
+     *
+     *
+     * @throws IOException io exception
+     * @throws LoginException login exception
+     * @throws InterruptedException interrupted exception
+     * @throws URISyntaxException uri syntax exception
+     * @throws SQLException sql exception
+     */
+    public HiveExport exportToHdfs(String tableId, String columnName, String directoryPath, ExportFormat format,
+                                   ExportCompression compression, boolean overwrite) throws IOException, LoginException, InterruptedException, URISyntaxException, SQLException {
+        String selectColumns = "*";
+        if(StringUtils.isNotEmpty(columnName)) {
+            selectColumns = columnName;
+        }
+        // location is read fresh, cached metadata may be stale after the table was recreated
+        String sourceLocation = describeTable(OauthUtils.getJwtToken(), tableId).getLocation();
+        // resolves relative path against working directory and checks the user may write there
+        String hdfsDirectory = hdfsService.createExportDirectory(directoryPath, sourceLocation, overwrite).toString();
+
+        String sql = "insert overwrite directory '" + hdfsDirectory + "'";
+        if (format == ExportFormat.TEXTFILE) {
+            sql += " row format delimited fields terminated by '" + DELIMITER + "'";
+        }
+        sql += " stored as " + format + " select " + selectColumns + " from " + tableId;
+
+        LOGGER.info("Exporting {} from table of id {} to {}", selectColumns, tableId, hdfsDirectory);
+        try (Connection hiveConenction = Hive.newInstance().getConnection(OauthUtils.getJwtToken());
+             Statement stmt = hiveConenction.createStatement()) {
+            for (String setting : compressionSettings(format, compression)) {
+                LOGGER.info("Executing Hive Sql statement {}", setting);
+                stmt.execute(setting);
+            }
+            LOGGER.info("Executing Hive Sql statement {}", sql);
+            stmt.execute(sql);
+        }
+
+        // hive recreates the directory, dropping permissions and ACLs set by createDirectory
+        List<HdfsFile> files = hdfsService.shareDirectory(hdfsDirectory);
+        long bytes = files.stream().mapToLong(HdfsFile::getBytes).sum();
+        return new HiveExport(hdfsDirectory, format, compression, files, bytes);
+    }
+
+    /**
+     *  Session settings selecting output compression; each format configures it differently.
+     *
+     * @param format output file format
+     * @param compression output compression
+     * @return list of set statements
+     */
+    private List<String> compressionSettings(ExportFormat format, ExportCompression compression) {
+        List<String> settings = new ArrayList<>();
+        switch (format) {
+            case ORC:
+                settings.add("set hive.exec.orc.default.compress=" + compression.getOrcCompression());
+                break;
+            case PARQUET:
+                settings.add("set parquet.compression=" + compression.getParquetCompression());
+                break;
+            default:
+                settings.add("set hive.exec.compress.output=" + (compression != ExportCompression.NONE));
+                if (compression != ExportCompression.NONE) {
+                    settings.add("set mapreduce.output.fileoutputformat.compress.codec=" + compression.getCodec());
+                    settings.add("set mapreduce.output.fileoutputformat.compress.type=BLOCK");
+                }
+        }
+        return settings;
+    }
+
     /**
      *  Converts CSV file row into SQL readable string
      *
@@ -167,4 +418,224 @@ public class HiveService {
         tableHeader = tableHeader.replaceAll("[-.]","_");
         return tableHeader;
     }
+
+    /**
+     *  Runs DESCRIBE FORMATTED and collects column definitions and table statistics.
+     *
+     * @param jwtToken token of the user the connection is opened for
+     * @param tableId table id
+     * @return table metadata
+     *
+     * @throws IOException io exception
+     * @throws LoginException login exception
+     * @throws InterruptedException interrupted exception
+     * @throws URISyntaxException uri syntax exception
+     * @throws SQLException sql exception
+     */
+    private HiveTableMetadata describeTable(TapOauthToken jwtToken, String tableId) throws IOException, LoginException, InterruptedException, URISyntaxException, SQLException {
+        List<HiveColumn> columns = new ArrayList<>();
+        Map<String, String> parameters = new HashMap<>();
+        String location = null;
+
+        try (Connection hiveConenction = Hive.newInstance().getConnection(jwtToken);
+             Statement stmt = hiveConenction.createStatement()) {
+            String sql = "describe formatted " + tableId;
+
+            LOGGER.info("Executing Hive Sql statement {}", sql);
+            try (ResultSet rs = stmt.executeQuery(sql)) {
+                // first section lists columns, it is terminated by an empty row;
+                // table parameters come later as rows with an empty first field
+                boolean inColumns = false;
+                boolean columnsDone = false;
+                while (rs.next()) {
+                    String name = StringUtils.trimToEmpty(rs.getString(1));
+                    String type = StringUtils.trimToEmpty(rs.getString(2));
+                    String comment = StringUtils.trimToEmpty(rs.getString(3));
+
+                    if (name.startsWith("# col_name")) {
+                        inColumns = !columnsDone;
+                    } else if (inColumns) {
+                        if (name.isEmpty()) {
+                            inColumns = columns.isEmpty();
+                            columnsDone = !inColumns;
+                        } else {
+                            columns.add(new HiveColumn(name, type, StringUtils.defaultIfEmpty(comment, null)));
+                        }
+                    } else if (LOCATION_ROW.equals(name)) {
+                        location = StringUtils.defaultIfEmpty(type, null);
+                    } else if (name.isEmpty() && !type.isEmpty()) {
+                        parameters.put(type, comment);
+                    }
+                }
+            }
+        }
+        return new HiveTableMetadata(tableId, columns, location,
+                parseStatistic(parameters.get(STAT_NUM_ROWS)),
+                parseStatistic(parameters.get(STAT_RAW_DATA_SIZE)),
+                parseStatistic(parameters.get(STAT_TOTAL_SIZE)),
+                parseStatistic(parameters.get(STAT_NUM_FILES)),
+                false);
+    }
+
+    /**
+     *  Schedules ANALYZE TABLE unless one is already running for the table. Cached metadata
+     *  is dropped once statistics are computed. Table statistics are always computed, since
+     *  some hive versions leave numRows unset when only FOR COLUMNS is run.
+     *
+     * @param jwtToken token captured in request scope, security context is not available in worker thread
+     * @param tableId table id
+     * @param forColumns if true, column level statistics are computed as well
+     */
+    private void scheduleAnalyze(TapOauthToken jwtToken, String tableId, boolean forColumns) {
+        String key = cacheKey(tableId);
+        if (!pendingAnalyses.add(key)) {
+            return;
+        }
+        analyzeExecutor.submit(() -> {
+            List<String> statements = new ArrayList<>();
+            statements.add("analyze table " + tableId + " compute statistics");
+            if (forColumns) {
+                statements.add("analyze table " + tableId + " compute statistics for columns");
+            }
+            try (Connection hiveConenction = Hive.newInstance().getConnection(jwtToken);
+                 Statement stmt = hiveConenction.createStatement()) {
+                for (String sql : statements) {
+                    LOGGER.info("Executing Hive Sql statement {}", sql);
+                    stmt.execute(sql);
+                }
+            } catch (Exception e) {
+                LOGGER.error("Computing statistics for table " + tableId + " failed", e);
+            } finally {
+                invalidateMetadata(tableId);
+                pendingAnalyses.remove(key);
+            }
+        });
+    }
+
+    private String formatRow(ResultSet rs) throws SQLException {
+        String row = "";
+        for (int i = 1; i <= rs.getMetaData().getColumnCount(); ++i) {
+            row += rs.getString(i) + " ";
+        }
+        return row;
+    }
+
+    private HiveTableMetadata getCachedMetadata(String key, String userName) {
+        TableMetadataEntry entry = metadataCache.get(key);
+        CachedMetadata cached = entry == null ? null : entry.byUser.get(userName);
+        if (cached == null || cached.expiresAt < System.currentTimeMillis()) {
+            return null;
+        }
+        return cached.metadata;
+    }
+
+    /**
+     *  Registers DESCRIBE about to run, so that the table entry and its version survive
+     *  invalidation until the DESCRIBE ends.
+     *
+     * @param key cache key of the table
+     * @return metadata version read before DESCRIBE
+     */
+    private long beginDescribe(String key) {
+        TableMetadataEntry entry = metadataCache.compute(key, (k, current) -> {
+            TableMetadataEntry updated = current != null ? current : new TableMetadataEntry();
+            updated.runningDescribes++;
+            return updated;
+        });
+        return entry.version;
+    }
+
+    /**
+     *  Stores DESCRIBE result unless the table was invalidated since the DESCRIBE started.
+     *  The version check and the store happen atomically with respect to invalidateMetadata.
+     *
+     * @param key cache key of the table
+     * @param userName user the result was read for
+     * @param version metadata version read before DESCRIBE
+     * @param metadata DESCRIBE result, null if DESCRIBE failed
+     */
+    private void endDescribe(String key, String userName, long version, HiveTableMetadata metadata) {
+        long now = System.currentTimeMillis();
+        metadataCache.computeIfPresent(key, (k, entry) -> {
+            entry.runningDescribes--;
+            if (metadata != null && entry.version == version) {
+                entry.byUser.put(userName, new CachedMetadata(metadata, now + METADATA_TTL_MILLIS));
+            }
+            return entry.purge(now);
+        });
+    }
+
+    private void invalidateMetadata(String tableId) {
+        metadataCache.computeIfPresent(cacheKey(tableId), (k, entry) -> {
+            entry.version++;
+            entry.byUser.clear();
+            return entry.purge(System.currentTimeMillis());
+        });
+    }
+
+    /**
+     *  Drops expired results of all tables, at most once per TTL, so that entries of tables
+     *  that are not read again do not stay forever.
+     */
+    private void sweepMetadata() {
+        long now = System.currentTimeMillis();
+        long last = lastMetadataSweep.get();
+        if (now - last < METADATA_TTL_MILLIS || !lastMetadataSweep.compareAndSet(last, now)) {
+            return;
+        }
+        for (String key : metadataCache.keySet()) {
+            metadataCache.computeIfPresent(key, (k, entry) -> entry.purge(now));
+        }
+    }
+
+    private static String cacheKey(String tableId) {
+        return tableId.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     *  Parses numeric table parameter. Hive reports -1 when statistics were never computed.
+     *
+     * @param value parameter value, may be null
+     * @return parsed value or null when unknown
+     */
+    private static Long parseStatistic(String value) {
+        if (StringUtils.isEmpty(value)) {
+            return null;
+        }
+        try {
+            long parsed = Long.parseLong(value);
+            return parsed < 0 ? null : parsed;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     *  Cached results of one table. Version and running DESCRIBE count are only accessed
+     *  inside compute of metadataCache, which serializes them per table.
+     */
+    private static final class TableMetadataEntry {
+        private final Map<String, CachedMetadata> byUser = new ConcurrentHashMap<>();
+        // bumped on every invalidation, so that DESCRIBE running meanwhile does not store stale result
+        private long version;
+        private int runningDescribes;
+
+        /**
+         * @return this entry without expired results, or null if it can be removed
+         */
+        private TableMetadataEntry purge(long now) {
+            byUser.values().removeIf(cached -> cached.expiresAt < now);
+            return byUser.isEmpty() && runningDescribes == 0 ? null : this;
+        }
+    }
+
+    private static final class CachedMetadata {
+        private final HiveTableMetadata metadata;
+        private final long expiresAt;
+
+        private CachedMetadata(HiveTableMetadata metadata, long expiresAt) {
+            this.metadata = metadata;
+            this.expiresAt = expiresAt;
+        }
+    }
 }
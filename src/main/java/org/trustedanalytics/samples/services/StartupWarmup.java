@@ -0,0 +1,195 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.trustedanalytics.samples.services;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.security.authentication.util.KerberosUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.trustedanalytics.samples.model.StartupPhase;
+import org.trustedanalytics.samples.model.StartupReport;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Once the application is started, loads hadoop and hive client classes, caches the hdfs working directory and
+ * checks that hdfs and HiveServer2 are reachable, so that the first user request does not pay for it.
+ * The instance reports ready only after both connection checks succeed; failed checks are retried.
+ */
+@Component
+public class StartupWarmup implements ApplicationListener<ApplicationReadyEvent> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StartupWarmup.class);
+    private static final String HIVE_DRIVER = "org.apache.hive.jdbc.HiveDriver";
+    private static final long RETRY_DELAY_SECONDS = 10;
+    private static final int HTTP_TIMEOUT_MILLIS = 5000;
+    private static final long CHECK_TIMEOUT_SECONDS = 30;
+
+    private final HdfsService hdfsService;
+    private final HiveService hiveService;
+    private final Environment environment;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    // connection checks run here, so that a hanging one cannot block the retries scheduled on executor
+    private final ExecutorService checkExecutor = Executors.newCachedThreadPool();
+    // accessed from executor thread only
+    private final Map<String, Future<?>> runningChecks = new HashMap<>();
+    private final Map<String, StartupPhase> phases = new LinkedHashMap<>();
+    private volatile Long startupMillis;
+
+    @FunctionalInterface
+    private interface Phase {
+        void run() throws Exception;
+    }
+
+    @Autowired
+    public StartupWarmup(HdfsService hdfsService, HiveService hiveService, Environment environment) {
+        this.hdfsService = hdfsService;
+        this.hiveService = hiveService;
+        this.environment = environment;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        record(new StartupPhase("spring-context", ManagementFactory.getRuntimeMXBean().getUptime(), true));
+        executor.submit(this::warmUp);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        checkExecutor.shutdownNow();
+    }
+
+    public StartupReport getReport() {
+        synchronized (phases) {
+            return new StartupReport(startupMillis != null, startupMillis, new ArrayList<>(phases.values()));
+        }
+    }
+
+    private void warmUp() {
+        // failures of these phases only make the first request slower, they do not block readiness
+        runPhase("hadoop-configuration", () -> {
+            hdfsService.getWorkingDirectory();
+            FileSystem.getFileSystemClass("hdfs", new Configuration());
+        });
+        runPhase("hive-driver", () -> Class.forName(HIVE_DRIVER));
+        runPhase("kerberos-configuration", KerberosUtil::getDefaultRealm);
+        // first request also initializes the dispatcher servlet
+        runPhase("swagger", this::fetchApiDocs);
+        checkConnections();
+    }
+
+    private void checkConnections() {
+        boolean hdfs = succeeded("hdfs-connection") || runCheck("hdfs-connection", hdfsService::checkConnection);
+        boolean hive = succeeded("hive-connection") || runCheck("hive-connection", hiveService::checkConnection);
+        if (hdfs && hive) {
+            startupMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+            LOGGER.info("Application ready {} ms after start", startupMillis);
+        } else {
+            LOGGER.warn("Connection checks failed, retrying in {} s", RETRY_DELAY_SECONDS);
+            executor.schedule(this::checkConnections, RETRY_DELAY_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    private boolean runPhase(String name, Phase phase) {
+        long start = System.nanoTime();
+        boolean success = true;
+        try {
+            phase.run();
+        } catch (Exception | LinkageError e) {
+            // readiness is not authenticated, so failure details stay in the log only
+            LOGGER.warn("Startup phase " + name + " failed", e);
+            success = false;
+        }
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        LOGGER.info("Startup phase {} took {} ms", name, millis);
+        record(new StartupPhase(name, millis, success));
+        return success;
+    }
+
+    /**
+     * Runs connection check as a phase that fails after a timeout. A check still running after
+     * its timeout is awaited again on retry instead of starting another one, so hanging checks
+     * do not pile up threads.
+     */
+    private boolean runCheck(String name, Phase check) {
+        return runPhase(name, () -> {
+            Future<?> future = runningChecks.get(name);
+            if (future == null || future.isDone()) {
+                future = checkExecutor.submit(() -> {
+                    check.run();
+                    return null;
+                });
+                runningChecks.put(name, future);
+            }
+            try {
+                future.get(CHECK_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            } catch (TimeoutException e) {
+                throw new TimeoutException(name + " did not complete within " + CHECK_TIMEOUT_SECONDS + " s");
+            }
+        });
+    }
+
+    private void fetchApiDocs() throws IOException {
+        String port = environment.getProperty("local.server.port");
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + "/v2/api-docs").openConnection();
+        connection.setConnectTimeout(HTTP_TIMEOUT_MILLIS);
+        connection.setReadTimeout(HTTP_TIMEOUT_MILLIS);
+        try (InputStream is = connection.getInputStream()) {
+            while (is.read() != -1) {
+                // response body is not needed, only the work done to produce it
+            }
+        }
+    }
+
+    private boolean succeeded(String name) {
+        synchronized (phases) {
+            StartupPhase phase = phases.get(name);
+            return phase != null && phase.isSuccess();
+        }
+    }
+
+    private void record(StartupPhase phase) {
+        synchronized (phases) {
+            phases.put(phase.getName(), phase);
+        }
+    }
+}
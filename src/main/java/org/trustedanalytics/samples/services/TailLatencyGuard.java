@@ -0,0 +1,237 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.trustedanalytics.samples.services;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.hdfs.DFSHedgedReadMetrics;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.security.AccessControlException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.trustedanalytics.samples.model.HdfsReadStats;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps slow DataNodes and NameNode hiccups from stalling requests: enables DFS hedged reads,
+ * puts a deadline on reads and retries idempotent metadata calls. Does nothing unless
+ * hdfs.tail-latency.enabled is set.
+ */
+@Component
+public class TailLatencyGuard {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TailLatencyGuard.class);
+    private static final String HEDGED_READ_RESOURCE = "hdfs-tail-latency.xml";
+
+    private final TailLatencyProperties properties;
+    private final ThreadPoolExecutor readExecutor;
+    private final AtomicReference<DFSHedgedReadMetrics> hedgedReadMetrics = new AtomicReference<>();
+    private final LongAdder readDeadlinesExceeded = new LongAdder();
+    private final LongAdder metadataRetries = new LongAdder();
+
+    @FunctionalInterface
+    public interface IoCall<T> {
+        T call() throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface StreamRead<T> {
+        T read(FSDataInputStream in) throws IOException;
+    }
+
+    @Autowired
+    public TailLatencyGuard(TailLatencyProperties properties) {
+        this.properties = properties;
+        // bounded, so that reads stuck on a slow DataNode cannot pile up threads and buffers
+        int threads = properties.getReadThreadPoolSize();
+        readExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(threads));
+        readExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * The hdfs client is built by hadoop-utils, so hedged read settings are provided as a hadoop
+     * default resource which every Configuration loading defaults picks up.
+     */
+    @PostConstruct
+    public void registerHedgedReads() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        System.setProperty("hdfs.tail-latency.hedged-read-thread-pool-size",
+                String.valueOf(properties.getHedgedReadThreadPoolSize()));
+        System.setProperty("hdfs.tail-latency.hedged-read-threshold-millis",
+                String.valueOf(properties.getHedgedReadThresholdMillis()));
+        Configuration.addDefaultResource(HEDGED_READ_RESOURCE);
+        LOGGER.info("Hdfs tail-latency mode enabled: {}", properties);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        readExecutor.shutdownNow();
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Remembers hedged read metrics of the file system client, they are shared by all clients.
+     */
+    public void register(FileSystem fs) {
+        if (properties.isEnabled() && fs instanceof DistributedFileSystem) {
+            hedgedReadMetrics.compareAndSet(null, ((DistributedFileSystem) fs).getClient().getHedgedReadMetrics());
+        }
+    }
+
+    /**
+     * Opens stream and runs read on a separate thread, giving up after configured deadline.
+     * When the deadline is exceeded the stream is closed, which aborts the pending read.
+     *
+     * @param description what is being read, used in error message
+     * @param open opens the stream, it is closed by this method
+     * @param read read operation
+     * @return result of read
+     *
+     * @throws IOException io exception, InterruptedIOException when deadline is exceeded
+     */
+    public <T> T withReadDeadline(String description, IoCall<FSDataInputStream> open, StreamRead<T> read) throws IOException {
+        if (!properties.isEnabled()) {
+            try (FSDataInputStream in = open.call()) {
+                return read.read(in);
+            }
+        }
+
+        AtomicReference<FSDataInputStream> stream = new AtomicReference<>();
+        AtomicBoolean abandoned = new AtomicBoolean();
+        Callable<T> task = () -> {
+            try (FSDataInputStream in = open.call()) {
+                stream.set(in);
+                // deadline may have passed while opening, nobody would close the stream then
+                if (abandoned.get()) {
+                    throw new InterruptedIOException("Reading " + description + " abandoned");
+                }
+                return read.read(in);
+            }
+        };
+
+        Future<T> future;
+        try {
+            future = readExecutor.submit(task);
+        } catch (RejectedExecutionException e) {
+            throw new IOException("Too many concurrent hdfs reads, rejected reading " + description, e);
+        }
+        try {
+            return future.get(properties.getReadDeadlineMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            abandon(future, abandoned, stream);
+            readDeadlinesExceeded.increment();
+            throw new InterruptedIOException("Reading " + description + " exceeded deadline of "
+                    + properties.getReadDeadlineMillis() + " ms");
+        } catch (InterruptedException e) {
+            abandon(future, abandoned, stream);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading " + description);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Retries idempotent metadata call with exponential backoff and jitter. Missing files,
+     * permission errors and interrupted or timed out calls are not retried.
+     *
+     * @param description call description, used in logs
+     * @param call metadata call such as getFileStatus
+     * @return result of call
+     *
+     * @throws IOException io exception of the last attempt
+     */
+    public <T> T withRetries(String description, IoCall<T> call) throws IOException {
+        int retries = properties.isEnabled() ? properties.getMetadataRetries() : 0;
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return call.call();
+            } catch (FileNotFoundException | AccessControlException | InterruptedIOException e) {
+                throw e;
+            } catch (IOException e) {
+                if (attempt >= retries) {
+                    throw e;
+                }
+                long backoff = properties.getRetryBackoffMillis() << attempt;
+                backoff += ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+                LOGGER.warn("{} failed, retrying in {} ms: {}", description, backoff, e.getMessage());
+                metadataRetries.increment();
+                sleep(backoff, description);
+            }
+        }
+    }
+
+    public HdfsReadStats getStats() {
+        DFSHedgedReadMetrics metrics = hedgedReadMetrics.get();
+        return new HdfsReadStats(properties.isEnabled(),
+                metrics == null ? 0 : metrics.getHedgedReadOps(),
+                metrics == null ? 0 : metrics.getHedgedReadWins(),
+                readDeadlinesExceeded.sum(),
+                metadataRetries.sum());
+    }
+
+    /**
+     * Closing the stream from this thread unblocks the read, interrupting alone does not.
+     */
+    private static void abandon(Future<?> future, AtomicBoolean abandoned, AtomicReference<FSDataInputStream> stream) {
+        abandoned.set(true);
+        future.cancel(true);
+        IOUtils.closeStream(stream.get());
+    }
+
+    private static void sleep(long millis, String description) throws InterruptedIOException {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while retrying " + description);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.trustedanalytics.samples.services;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings of hdfs tail-latency mode, see application.yml.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "hdfs.tail-latency")
+public class TailLatencyProperties {
+    private boolean enabled;
+    private int hedgedReadThreadPoolSize = 16;
+    private long hedgedReadThresholdMillis = 200;
+    private long readDeadlineMillis = 10000;
+    private int readThreadPoolSize = 32;
+    private int metadataRetries = 3;
+    private long retryBackoffMillis = 100;
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.trustedanalytics.samples.profiling;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ColumnAccumulatorTest {
+
+    @Test
+    public void parseDouble_plainNumbers_parsed() {
+        assertEquals(5.1, parse("5.1"), 1e-12);
+        assertEquals(-3, parse("-3"), 0);
+        assertEquals(42, parse("+42"), 0);
+        assertEquals(0.5, parse(".5"), 1e-12);
+        assertEquals(1, parse("1."), 0);
+        assertEquals(0.002, parse("0.002"), 1e-15);
+    }
+
+    @Test
+    public void parseDouble_exponent_parsed() {
+        assertEquals(1000, parse("1e3"), 0);
+        assertEquals(0.125, parse("+12.5E-2"), 1e-15);
+        assertEquals(-2.5e10, parse("-2.5e+10"), 0);
+    }
+
+    @Test
+    public void parseDouble_moreThan18Digits_keepsLeadingDigits() {
+        assertEquals(1.234567890123456789e21, parse("1234567890123456789012"), 1e6);
+        assertEquals(0.1234567890123456789, parse("0.1234567890123456789012"), 1e-15);
+        assertEquals(1e-25, parse("0.0000000000000000000000001"), 1e-40);
+    }
+
+    @Test
+    public void parseDouble_notANumber_returnsNaN() {
+        for (String value : new String[] {"", "-", "+", ".", "1e", "1e+", "--1", "1.2.3", "abc", "12a", "1 2", "\\N"}) {
+            assertTrue("'" + value + "' parsed as number", Double.isNaN(parse(value)));
+        }
+    }
+
+    @Test
+    public void add_nullMarkers_countedAsNull() {
+        ColumnAccumulator accumulator = new ColumnAccumulator();
+        add(accumulator, "");
+        add(accumulator, "   ");
+        add(accumulator, "\\N");
+        accumulator.addNull();
+
+        assertEquals(4, accumulator.getNullCount());
+        assertEquals(0, accumulator.getCount());
+        assertEquals(4, accumulator.getRows());
+        assertEquals(0, accumulator.getDistinctEstimate());
+        assertNull(accumulator.getMin());
+        assertNull(accumulator.getMean());
+    }
+
+    @Test
+    public void add_mixedValues_numericStatisticsOnlyFromNumbers() {
+        ColumnAccumulator accumulator = new ColumnAccumulator();
+        add(accumulator, " 4 ");
+        add(accumulator, "-2");
+        add(accumulator, "setosa");
+        add(accumulator, "4");
+
+        assertEquals(4, accumulator.getCount());
+        assertEquals(3, accumulator.getNumericCount());
+        assertEquals(-2, accumulator.getMin(), 0);
+        assertEquals(4, accumulator.getMax(), 0);
+        assertEquals(2, accumulator.getMean(), 1e-12);
+        assertEquals(3, accumulator.getDistinctEstimate());
+    }
+
+    @Test
+    public void merge_partialResults_combined() {
+        ColumnAccumulator first = new ColumnAccumulator();
+        add(first, "1");
+        add(first, "");
+        ColumnAccumulator second = new ColumnAccumulator();
+        add(second, "5");
+        add(second, "1");
+
+        first.merge(second);
+
+        assertEquals(3, first.getCount());
+        assertEquals(1, first.getNullCount());
+        assertEquals(1, first.getMin(), 0);
+        assertEquals(5, first.getMax(), 0);
+        assertEquals(7 / 3.0, first.getMean(), 1e-12);
+        assertEquals(2, first.getDistinctEstimate());
+    }
+
+    @Test
+    public void merge_withEmpty_keepsStatistics() {
+        ColumnAccumulator accumulator = new ColumnAccumulator();
+        add(accumulator, "3");
+
+        accumulator.merge(new ColumnAccumulator());
+
+        assertEquals(3, accumulator.getMin(), 0);
+        assertEquals(3, accumulator.getMax(), 0);
+    }
+
+    private static double parse(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        return ColumnAccumulator.parseDouble(bytes, 0, bytes.length);
+    }
+
+    private static void add(ColumnAccumulator accumulator, String value) {
+        // surrounding bytes must not leak into the field
+        byte[] bytes = ("x," + value + ",x").getBytes(StandardCharsets.UTF_8);
+        accumulator.add(bytes, 2, bytes.length - 2);
+    }
+}
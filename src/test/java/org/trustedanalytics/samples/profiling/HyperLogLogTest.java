@@ -0,0 +1,88 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.trustedanalytics.samples.profiling;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HyperLogLogTest {
+
+    // about three standard errors for 4096 registers
+    private static final double TOLERANCE = 0.05;
+
+    @Test
+    public void estimate_empty_returnsZero() {
+        assertEquals(0, new HyperLogLog().estimate());
+    }
+
+    @Test
+    public void estimate_knownCardinalities_withinTolerance() {
+        for (int cardinality : new int[] {1, 10, 100, 1000, 10000, 100000, 1000000}) {
+            HyperLogLog hll = new HyperLogLog();
+            offerRange(hll, 0, cardinality);
+
+            double error = Math.abs(hll.estimate() - cardinality) / (double) cardinality;
+            assertTrue("cardinality " + cardinality + " estimated as " + hll.estimate(), error <= TOLERANCE);
+        }
+    }
+
+    @Test
+    public void estimate_duplicates_countedOnce() {
+        HyperLogLog once = new HyperLogLog();
+        offerRange(once, 0, 5000);
+        HyperLogLog repeated = new HyperLogLog();
+        for (int i = 0; i < 10; i++) {
+            offerRange(repeated, 0, 5000);
+        }
+
+        assertEquals(once.estimate(), repeated.estimate());
+    }
+
+    @Test
+    public void merge_overlappingParts_equalsEstimateOfUnion() {
+        HyperLogLog first = new HyperLogLog();
+        offerRange(first, 0, 60000);
+        HyperLogLog second = new HyperLogLog();
+        offerRange(second, 40000, 100000);
+        HyperLogLog union = new HyperLogLog();
+        offerRange(union, 0, 100000);
+
+        first.merge(second);
+
+        assertEquals(union.estimate(), first.estimate());
+        assertTrue(Math.abs(first.estimate() - 100000) <= 100000 * TOLERANCE);
+    }
+
+    @Test
+    public void hash_byteRange_ignoresBytesOutsideRange() {
+        byte[] padded = "xxvaluexx".getBytes(StandardCharsets.UTF_8);
+        byte[] exact = "value".getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(HyperLogLog.hash(exact, 0, exact.length), HyperLogLog.hash(padded, 2, 7));
+    }
+
+    private static void offerRange(HyperLogLog hll, int from, int to) {
+        for (int i = from; i < to; i++) {
+            byte[] value = ("value-" + i).getBytes(StandardCharsets.UTF_8);
+            hll.offer(HyperLogLog.hash(value, 0, value.length));
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.trustedanalytics.samples.profiling;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+
+public class ProfileTaskTest {
+
+    private static final String HEADER = "sepal_length,species";
+    private static final byte[] HEADER_BYTES = HEADER.getBytes(StandardCharsets.UTF_8);
+    // lines of different lengths, an empty line and a last line without line end
+    private static final String DATA = HEADER + "\n"
+            + "5.1,setosa\n"
+            + "4.9,setosa\n"
+            + "\n"
+            + "7.0,versicolor\n"
+            + "6.33,virginica\r\n"
+            + ",\n"
+            + "5,setosa";
+    private static final int DATA_ROWS = 7;
+
+    private static ForkJoinPool pool;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private FileSystem fs;
+    private CompressionCodecFactory codecs;
+
+    @BeforeClass
+    public static void startPool() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterClass
+    public static void stopPool() {
+        pool.shutdownNow();
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        fs = FileSystem.getLocal(new Configuration()).getRawFileSystem();
+        codecs = new CompressionCodecFactory(fs.getConf());
+    }
+
+    @Test
+    public void scan_wholeFile_skipsHeaderOnly() throws IOException {
+        Path path = write(DATA);
+
+        ColumnAccumulator[] result = scan(split(path, DATA.length()));
+
+        assertEquals(DATA_ROWS, result[0].getRows());
+        assertEquals(5, result[0].getNumericCount());
+        assertEquals(28.33 / 5, result[0].getMean(), 1e-12);
+        assertEquals(2, result[1].getNullCount());
+    }
+
+    @Test
+    public void scan_fileWithoutHeader_countsFirstLine() throws IOException {
+        Path path = write("1,a\n2,b\n");
+
+        ColumnAccumulator[] result = scan(split(path, 8));
+
+        assertEquals(2, result[0].getRows());
+    }
+
+    @Test
+    public void scan_gzipFile_readsDecompressedLines() throws IOException {
+        Path plain = write(DATA);
+        Path compressed = writeGzip(DATA);
+        ColumnAccumulator[] whole = scan(split(plain, DATA.length()));
+
+        // split length is the compressed size, which is smaller than the decompressed content
+        ColumnAccumulator[] result = scan(split(compressed, fs.getFileStatus(compressed).getLen()));
+
+        assertSame(whole, result, "gzip");
+    }
+
+    @Test
+    public void scan_twoSplitsAtEveryOffset_sameAsWholeFile() throws IOException {
+        Path path = write(DATA);
+        ColumnAccumulator[] whole = scan(split(path, DATA.length()));
+
+        for (int offset = 1; offset < DATA.length(); offset++) {
+            ColumnAccumulator[] result = scan(Arrays.asList(
+                    new FileSplit(path, 0, offset),
+                    new FileSplit(path, offset, DATA.length() - offset)));
+
+            assertSame(whole, result, "split at " + offset);
+        }
+    }
+
+    @Test
+    public void scan_splitsSmallerThanLines_sameAsWholeFile() throws IOException {
+        Path path = write(DATA);
+        ColumnAccumulator[] whole = scan(split(path, DATA.length()));
+
+        for (int splitSize = 1; splitSize <= 4; splitSize++) {
+            List<FileSplit> splits = new ArrayList<>();
+            for (int start = 0; start < DATA.length(); start += splitSize) {
+                splits.add(new FileSplit(path, start, Math.min(splitSize, DATA.length() - start)));
+            }
+
+            assertSame(whole, scan(splits), "split size " + splitSize);
+        }
+    }
+
+    private static void assertSame(ColumnAccumulator[] expected, ColumnAccumulator[] actual, String message) {
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(message, expected[i].getRows(), actual[i].getRows());
+            assertEquals(message, expected[i].getNullCount(), actual[i].getNullCount());
+            assertEquals(message, expected[i].getNumericCount(), actual[i].getNumericCount());
+            assertEquals(message, expected[i].getDistinctEstimate(), actual[i].getDistinctEstimate());
+        }
+        assertEquals(message, expected[0].getMean(), actual[0].getMean(), 1e-12);
+    }
+
+    private ColumnAccumulator[] scan(List<FileSplit> splits) {
+        return pool.invoke(new ProfileTask(fs, codecs, splits, 0, splits.size(), HEADER_BYTES, 2));
+    }
+
+    private static List<FileSplit> split(Path path, long length) {
+        return Collections.singletonList(new FileSplit(path, 0, length));
+    }
+
+    private Path write(String content) throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return new Path(file.getAbsolutePath());
+    }
+
+    private Path writeGzip(String content) throws IOException {
+        File file = folder.newFile("data.csv.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file.toPath()))) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        return new Path(file.getAbsolutePath());
+    }
+}